@@ -0,0 +1,11 @@
+void testPointer(const char* foo){
+	
+};
+
+void testUnsigned(unsigned int foo){
+	
+};
+
+int testReference(const std::string& foo, int bar){
+	return bar;
+};
\ No newline at end of file
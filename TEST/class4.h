@@ -0,0 +1,9 @@
+
+class class4{
+	public:
+		void testPointer(const char* foo);
+		
+		void testUnsigned(unsigned int foo);
+		
+		int testReference(const std::string& foo, int bar);
+}
\ No newline at end of file
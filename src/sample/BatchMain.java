@@ -0,0 +1,344 @@
+package sample;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Command line entry point that generates the unit tests of many projects in one process, from a manifest listing each
+ * project with the HeadlessMain arguments it is generated with.
+ * Several projects are generated at once, and the source files of all of them are parsed on a single work-stealing
+ * pool, so a thread that runs out of files of one project takes files of another instead of sitting idle; The projects
+ * share their parse and CSV caches, which are saved once at the end.
+ * Prints how long each project took and how fast its files went through once every project has been generated.
+ *
+ * The manifest is read a line at a time. Blank lines and lines starting with # are skipped, a line "*: <arguments>"
+ * holds arguments given to every project before its own, and any other line is "<name>: <arguments>"; Arguments are
+ * separated by spaces, may be put in double quotes, and relative paths in them are resolved against the manifest's
+ * folder.
+ *
+ * @author Axolotl Development Team
+ */
+public class BatchMain {
+
+    //The program's logger
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    //Default number of projects generated at the same time
+    public static final int DEFAULT_CONCURRENT_PROJECTS = 4;
+
+    private static final String USAGE =
+            "Usage: BatchMain [options] <manifest>\n" +
+            "  -j, --threads <n>           Threads parsing the files of every project (default: one per core)\n" +
+            "  --projects <n>              Projects generated at the same time (default: " +
+            DEFAULT_CONCURRENT_PROJECTS + ")\n" +
+            "  -h, --help                  Show this message\n" +
+            "Manifest lines: '<name>: <HeadlessMain arguments>', or '*: <arguments>' for every project";
+
+    /*
+     * What became of one project of the manifest.
+     * name - The project's name in the manifest.
+     * files, bytes - The number and total size of its source files.
+     * tests - The number of unit test executables written.
+     * millis - How long it took to generate, from when it was started.
+     * error - Why it failed, or null if it was generated.
+     */
+    private static class ProjectResult {
+        final String name;
+        long files, bytes, millis;
+        int tests;
+        String error;
+
+        ProjectResult(String name) {
+            this.name = name;
+        }
+    }
+
+    /*
+     * manifest - The manifest file.
+     * threads - The number of threads parsing the files of every project.
+     * concurrentProjects - The number of projects generated at the same time.
+     */
+    private File manifest;
+    private int threads, concurrentProjects;
+
+    /**
+     * Creates a new batch with the default settings.
+     */
+    public BatchMain() {
+        threads = Runtime.getRuntime().availableProcessors();
+        concurrentProjects = DEFAULT_CONCURRENT_PROJECTS;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Reads the command line arguments and generates the projects of the manifest they name.
+     *
+     * @param args The command line arguments.
+     * @param out  Where the summary is printed.
+     * @param err  Where usage and errors are printed.
+     * @return The exit status; 0 if every project was generated, 1 if any failed and 2 if the arguments or the manifest
+     * were not understood.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        BatchMain batch = new BatchMain();
+        ArrayList<String[]> projects;
+        try {
+            if (!batch.parseArguments(args)) {
+                out.println(USAGE);
+                return 0;
+            }
+            projects = readManifest(batch.manifest);
+        } catch (IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        long start = System.nanoTime();
+        ArrayList<ProjectResult> results = batch.generate(projects);
+        printSummary(results, (System.nanoTime() - start) / 1000000, out);
+        for (ProjectResult result : results)
+            if (result.error != null)
+                return 1;
+        return 0;
+    }
+
+    /**
+     * Reads the command line arguments into this batch's settings.
+     *
+     * @param args The command line arguments.
+     * @return false if help was asked for and nothing should be generated.
+     * @throws IllegalArgumentException If an argument is unknown, missing its value or has an invalid value.
+     */
+    public boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    return false;
+                case "-j":
+                case "--threads":
+                    threads = Math.max(1, number(args, ++i, arg));
+                    break;
+                case "--projects":
+                    concurrentProjects = Math.max(1, number(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("-") || manifest != null)
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    manifest = new File(arg);
+            }
+        }
+        if (manifest == null)
+            throw new IllegalArgumentException("No manifest given.");
+        if (!manifest.isFile())
+            throw new IllegalArgumentException("Manifest " + manifest + " does not exist.");
+        return true;
+    }
+
+    /*
+    Reads the projects of a manifest.
+    @returns each project's name followed by its arguments, those for every project first
+    @throws IllegalArgumentException if a line has no name, or two projects have the same name
+     */
+    private static ArrayList<String[]> readManifest(File manifest) throws IOException {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<ArrayList<String>> arguments = new ArrayList<>();
+        ArrayList<String> defaults = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(manifest))) {
+            int number = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                number++;
+                ArrayList<String> words = splitArguments(line.trim());
+                if (words.isEmpty() || words.get(0).startsWith("#"))
+                    continue;
+                String name = words.remove(0);
+                if (!name.endsWith(":") || name.length() == 1)
+                    throw new IllegalArgumentException("Line " + number + " of " + manifest +
+                            " does not start with a name and a colon.");
+                name = name.substring(0, name.length() - 1);
+                if (name.equals("*"))
+                    defaults.addAll(words);
+                else if (names.contains(name))
+                    throw new IllegalArgumentException("Project " + name + " is listed twice in " + manifest + ".");
+                else {
+                    names.add(name);
+                    arguments.add(words);
+                }
+            }
+        }
+        // The arguments for every project may be given anywhere in the manifest, and always come first
+        ArrayList<String[]> projects = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            ArrayList<String> project = new ArrayList<>();
+            project.add(names.get(i));
+            project.addAll(defaults);
+            project.addAll(arguments.get(i));
+            projects.add(project.toArray(new String[project.size()]));
+        }
+        return projects;
+    }
+
+    /*
+    Splits a manifest line into arguments at spaces outside double quotes, dropping the quotes.
+     */
+    static ArrayList<String> splitArguments(String line) {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false, started = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                started = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (started)
+                    words.add(word.toString());
+                word.setLength(0);
+                started = false;
+            } else {
+                word.append(c);
+                started = true;
+            }
+        }
+        if (started)
+            words.add(word.toString());
+        return words;
+    }
+
+    /*
+    Generates every project, several at once, parsing the files of all of them on one shared pool;
+    A project that fails does not stop the others.
+    @param projects each project's name followed by its arguments
+    @returns what became of each project, in the order given
+     */
+    private ArrayList<ProjectResult> generate(ArrayList<String[]> projects) {
+        File folder = manifest.getAbsoluteFile().getParentFile();
+        Map<File, ParseCache> parseCaches = new ConcurrentHashMap<>();
+        Map<File, CsvCache> csvCaches = new ConcurrentHashMap<>();
+        ForkJoinPool parsePool = new ForkJoinPool(threads);
+        ExecutorService running = Executors.newFixedThreadPool(concurrentProjects);
+        ArrayList<ProjectResult> results = new ArrayList<>();
+        ArrayList<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (String[] project : projects) {
+                ProjectResult result = new ProjectResult(project[0]);
+                results.add(result);
+                HeadlessMain generation = new HeadlessMain(folder);
+                try {
+                    generation.parseArguments(Arrays.copyOfRange(project, 1, project.length));
+                } catch (IllegalArgumentException e) {
+                    result.error = e.getMessage();
+                    continue;
+                }
+                GenerationJob job = generation.createJob(parseCaches, csvCaches);
+                job.setParsePool(parsePool);
+                job.setSaveCaches(false);
+                File[] sources = generation.getSourceFiles();
+                result.files = sources.length;
+                for (File source : sources)
+                    result.bytes += source.length();
+                tasks.add(running.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        job.run(sources);
+                        result.tests = job.getTestUnits().size();
+                    } catch (IOException | RuntimeException e) {
+                        result.error = e.toString();
+                    }
+                    result.millis = (System.nanoTime() - start) / 1000000;
+                }));
+            }
+            for (Future<?> task : tasks)
+                task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Every failure of a project is caught in its task
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            running.shutdownNow();
+            parsePool.shutdownNow();
+        }
+
+        for (ParseCache cache : parseCaches.values()) {
+            LOGGER.info(cache.toString());
+            try {
+                cache.save();
+            } catch (IOException e) {
+                LOGGER.warning("Parse cache could not be saved.\n" + e.toString());
+            }
+        }
+        for (CsvCache cache : csvCaches.values()) {
+            LOGGER.info(cache.toString());
+            try {
+                cache.save();
+            } catch (IOException e) {
+                LOGGER.warning("CSV cache could not be saved.\n" + e.toString());
+            }
+        }
+        return results;
+    }
+
+    /*
+    Prints how long each project took and how fast its source files were generated from, then the totals.
+    @param wallMillis how long the whole batch took
+     */
+    private static void printSummary(ArrayList<ProjectResult> results, long wallMillis, PrintStream out) {
+        int width = "Project".length();
+        for (ProjectResult result : results)
+            width = Math.max(width, result.name.length());
+        String row = "%-" + width + "s  %-6s %7s %7s %9s %9s %8s%n";
+        out.printf(row, "Project", "Status", "Files", "Tests", "Time ms", "Files/s", "MB/s");
+        long files = 0, bytes = 0, millis = 0;
+        int failed = 0;
+        for (ProjectResult result : results) {
+            if (result.error != null) {
+                failed++;
+                out.printf(row, result.name, "failed", result.files, "", "", "", "");
+                continue;
+            }
+            files += result.files;
+            bytes += result.bytes;
+            millis += result.millis;
+            out.printf(row, result.name, "ok", result.files, result.tests, result.millis,
+                    rate(result.files, result.millis), rate(result.bytes / 1048576.0, result.millis));
+        }
+        out.println((results.size() - failed) + " of " + results.size() + " projects generated, " + files +
+                " files in " + wallMillis + " ms (" + millis + " ms of project time; " + rate(files, wallMillis) +
+                " files/s, " + rate(bytes / 1048576.0, wallMillis) + " MB/s)");
+        for (ProjectResult result : results)
+            if (result.error != null)
+                out.println(result.name + " failed: " + result.error);
+    }
+
+    private static String rate(double amount, long millis) {
+        return String.format("%.1f", amount * 1000 / Math.max(1, millis));
+    }
+
+    private static int number(String[] args, int index, String option) {
+        if (index >= args.length)
+            throw new IllegalArgumentException(option + " expects a value.");
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a whole number.");
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * What has to be compiled and linked to build a project, worked out once from the project's dependencies and test
+ * fixture so that each build file writer (make, Ninja) only has to write it out in its own syntax.
+ *
+ * @author Axolotl Development Team
+ */
+public class BuildPlan {
+
+    //Name of the static library the project's objects are archived into for the unit tests to link against
+    public static final String staticLibrary = "libproject.a";
+
+    /**
+     * One translation unit compiled into one object.
+     */
+    public static class Compile {
+        /*
+         * source - The .cpp file compiled.
+         * object - The object file produced.
+         * prerequisites - The headers the object is rebuilt for, when the compiler does not track them itself.
+         */
+        final String source, object;
+        final ArrayList<String> prerequisites;
+
+        Compile(String source, String object, ArrayList<String> prerequisites) {
+            this.source = source;
+            this.object = object;
+            this.prerequisites = prerequisites;
+        }
+    }
+
+    /**
+     * One executable linked from objects, or one static library archived from them.
+     */
+    public static class Link {
+        /*
+         * output - The file produced.
+         * inputs - The files linked into the output.
+         * archive - Whether the output is a static library rather than an executable.
+         */
+        final String output;
+        final ArrayList<String> inputs;
+        final boolean archive;
+
+        Link(String output, ArrayList<String> inputs) {
+            this(output, inputs, false);
+        }
+
+        Link(String output, ArrayList<String> inputs, boolean archive) {
+            this.output = output;
+            this.inputs = inputs;
+            this.archive = archive;
+        }
+    }
+
+    /*
+     * objectDirectory - The folder objects are built into, as written in the build file, or the empty string.
+     * automaticDependencies - Whether the compiler writes a dependency file for each object.
+     * compiles - Every compile step, in build order.
+     * links - Every link step.
+     * precompiledHeader - The step precompiling the header shared by the unit tests, or null if there is none.
+     * defaultTargets - The outputs built when no target is named.
+     * testTargets - The unit test executables, built by the tests target.
+     */
+    final String objectDirectory;
+    final boolean automaticDependencies;
+    final ArrayList<Compile> compiles;
+    final ArrayList<Link> links;
+    Compile precompiledHeader;
+    final ArrayList<String> defaultTargets, testTargets;
+
+    private BuildPlan(String objectDirectory, boolean automaticDependencies) {
+        this.objectDirectory = objectDirectory;
+        this.automaticDependencies = automaticDependencies;
+        compiles = new ArrayList<>();
+        links = new ArrayList<>();
+        defaultTargets = new ArrayList<>();
+        testTargets = new ArrayList<>();
+    }
+
+    /**
+     * Plans the build of a project: every .cpp file compiled once into its own object, and the objects linked into
+     * the fixture's final executable;
+     * Each unit test is compiled from its sources into its own executable, linked with the objects of the classes it
+     * tests and of every class those classes depend on;
+     * If the fixture asks for a static library, the project's objects are archived once instead and every unit test
+     * links only its own object against the archive, leaving the linker to pick out the objects it needs.
+     *
+     * @param dependencies          The Dependence of each .cpp file of the project.
+     * @param testUnits             The unit test executables to be built; A unity batch tests several classes by
+     *                              including their test files.
+     * @param fixture               The test fixture describing the build.
+     * @param objectDirectory       The folder objects are built into, as it is to be written in the build file, or
+     *                              the empty string for the build file's own folder.
+     * @param automaticDependencies Whether the compiler writes a dependency file for each object; If not, each object
+     *                              lists the project headers its .cpp file includes.
+     * @return The plan of the build.
+     */
+    public static BuildPlan forProject(Collection<Dependence> dependencies, Collection<TestUnit> testUnits,
+                                       TestFixture fixture, String objectDirectory, boolean automaticDependencies) {
+        BuildPlan plan = new BuildPlan(objectDirectory, automaticDependencies);
+        DependencyGraph graph = DependencyGraph.build(dependencies);
+        // Lists the classes in build order, so the build file does not change from run to run
+        ArrayList<Dependence> ordered = graph.dependencesInBuildOrder();
+        ArrayList<String> objects = new ArrayList<>();
+        for (Dependence dep : ordered) {
+            ArrayList<String> headers = new ArrayList<>();
+            if (!automaticDependencies)
+                for (String header : dep.getDependencies())
+                    if (!header.isEmpty())
+                        headers.add(header + ".h");
+            Compile compile = new Compile(dep.getClassName() + ".cpp", plan.objectPath(dep.getClassName()), headers);
+            plan.compiles.add(compile);
+            objects.add(compile.object);
+        }
+        plan.links.add(new Link(fixture.getFinalExecutableName(), objects));
+        plan.defaultTargets.add(fixture.getFinalExecutableName());
+        boolean archived = fixture.getStaticLibrary() && !testUnits.isEmpty() && !objects.isEmpty();
+        if (archived)
+            plan.links.add(new Link(staticLibrary, new ArrayList<>(objects), true));
+
+        if (fixture.getPrecompiledHeader() && !testUnits.isEmpty())
+            plan.precompiledHeader = new Compile(UnitTestWriter.precompiledHeader,
+                    UnitTestWriter.precompiledHeader + ".gch", UnitTestWriter.commonProjectHeaders(dependencies));
+        for (TestUnit unit : testUnits) {
+            ArrayList<String> inputs = new ArrayList<>();
+            for (String source : unit.getSources()) {
+                ArrayList<String> prerequisites = new ArrayList<>();
+                if (!automaticDependencies)
+                    for (String tested : unit.getTestedClasses()) {
+                        prerequisites.add(tested + ".h");
+                        // A unity batch includes the test file of each class it tests
+                        if (!unit.getName().equals(tested + "TEST"))
+                            prerequisites.add(tested + "TEST.cpp");
+                    }
+                if (plan.precompiledHeader != null)
+                    prerequisites.add(plan.precompiledHeader.object);
+                Compile compile = new Compile(source + ".cpp", plan.objectPath(source), prerequisites);
+                plan.compiles.add(compile);
+                inputs.add(compile.object);
+            }
+            if (archived)
+                inputs.add(staticLibrary);
+            else
+                inputs.addAll(plan.objectsNeededBy(graph, ordered, unit.getTestedClasses()));
+            plan.links.add(new Link(unit.getName(), inputs));
+            plan.testTargets.add(unit.getName());
+        }
+        return plan;
+    }
+
+    /*
+    Finds the project objects a unit test has to be linked with.
+    @param graph the project's include graph
+    @param ordered the Dependence of each .cpp file in build order
+    @param testedClasses the classes under test
+    @returns the objects of the classes and of every class they depend on that has a .cpp file, in build order
+     */
+    private ArrayList<String> objectsNeededBy(DependencyGraph graph, ArrayList<Dependence> ordered,
+                                              Collection<String> testedClasses) {
+        ArrayList<String> objects = new ArrayList<>();
+        BitSet needed = new BitSet(graph.size());
+        for (String tested : testedClasses) {
+            int id = graph.idOf(tested);
+            if (id != -1) {
+                needed.or(graph.transitiveDependencies(id));
+                needed.set(id);
+            }
+        }
+        for (Dependence dep : ordered)
+            if (needed.get(graph.idOf(dep.getClassName())))
+                objects.add(objectPath(dep.getClassName()));
+        return objects;
+    }
+
+    /*
+    @param name the name of a translation unit, without its file type
+    @returns the path of the unit's object
+     */
+    private String objectPath(String name) {
+        return objectDirectory.isEmpty() ? name + ".o" : objectDirectory + "/" + name + ".o";
+    }
+}
@@ -0,0 +1,328 @@
+package sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads a large CSV file on several threads, each tokenizing its own part of the file, while still handing out the
+ * rows one at a time in the order they are in the file.
+ * The file is cut into chunks of equal size and each cut is moved forward to the start of the next row; Whether a line
+ * break ends a row depends on whether it is inside a literal, which depends on everything before it, so every chunk is
+ * first scanned from each state a CsvReader can be in at its start, and the states are then chained from the start of
+ * the file to find where each chunk's first row really begins.
+ * The scan works on bytes, which is correct for any charset that writes quotes, backslashes and line breaks as single
+ * ASCII bytes never found inside another character, such as UTF-8 and ISO-8859-1.
+ * Chunks are scanned and parts tokenized only a few ahead of the reader, so memory stays bounded however large the file
+ * is, and the first rows are handed out before the end of the file has been scanned.
+ *
+ * @author Axolotl Development Team
+ */
+public class ChunkedCsvReader extends CsvReader {
+
+    //Size of the chunks a file is cut into; Small enough that the rows of the parts waiting to be read stay few
+    public static final long CHUNK_SIZE = 1L << 20;
+    //Size of the smallest file worth reading in parts
+    public static final long MIN_LENGTH = 16L << 20;
+
+    //States of a CsvReader between characters: outside a literal at the start of a field, where a single quote opens a
+    //character literal, or further into it, or inside a string or character literal, just after a backslash or not
+    private static final int FIELD_START = 0, OUTSIDE = 1, STRING = 2, STRING_ESCAPE = 3, CHARACTER = 4,
+            CHARACTER_ESCAPE = 5, STATES = 6;
+    //Classes of bytes that move a CsvReader between states the same way; Every other byte is in class 0
+    private static final int DOUBLE_QUOTE = 1, SINGLE_QUOTE = 2, BACKSLASH = 3, LINE_BREAK = 4, COMMA = 5, SPACE = 6,
+            CLASSES = 7;
+    private static final byte[] BYTE_CLASSES = new byte[256];
+    /* A chunk is scanned from every start state at once by following the vector of the states each has led to, held as
+       a single number with the state of start state s as its s-th digit in base 6:
+       VECTORS - The number of vectors.
+       NEXT_VECTOR - The vector after each vector and class of byte, at vector * CLASSES + class; Held as chars, the
+       vectors being too many for a short.
+       OUTSIDE_STARTS - For each vector, a bit set of the start states that have led outside a literal.
+     */
+    private static final int VECTORS = 6 * 6 * 6 * 6 * 6 * 6;
+    private static final char[] NEXT_VECTOR = new char[VECTORS * CLASSES];
+    private static final byte[] OUTSIDE_STARTS = new byte[VECTORS];
+    //The vector in which each start state is still itself
+    private static final int START_VECTOR;
+
+    static {
+        BYTE_CLASSES['"'] = DOUBLE_QUOTE;
+        BYTE_CLASSES['\''] = SINGLE_QUOTE;
+        BYTE_CLASSES['\\'] = BACKSLASH;
+        BYTE_CLASSES['\n'] = LINE_BREAK;
+        BYTE_CLASSES[','] = COMMA;
+        // A CsvReader drops carriage returns outside literals, so they leave the start of a field as it is
+        BYTE_CLASSES[' '] = SPACE;
+        BYTE_CLASSES['\t'] = SPACE;
+        BYTE_CLASSES['\r'] = SPACE;
+        int[][] transitions = new int[STATES][CLASSES];
+        for (int c = 0; c < CLASSES; c++) {
+            transitions[FIELD_START][c] = c == DOUBLE_QUOTE ? STRING : c == SINGLE_QUOTE ? CHARACTER :
+                    c == LINE_BREAK || c == COMMA || c == SPACE ? FIELD_START : OUTSIDE;
+            transitions[OUTSIDE][c] = c == DOUBLE_QUOTE ? STRING : c == LINE_BREAK || c == COMMA ? FIELD_START : OUTSIDE;
+            transitions[STRING][c] = c == BACKSLASH ? STRING_ESCAPE : c == DOUBLE_QUOTE ? OUTSIDE : STRING;
+            transitions[STRING_ESCAPE][c] = STRING;
+            transitions[CHARACTER][c] = c == BACKSLASH ? CHARACTER_ESCAPE : c == SINGLE_QUOTE ? OUTSIDE : CHARACTER;
+            transitions[CHARACTER_ESCAPE][c] = CHARACTER;
+        }
+        for (int vector = 0; vector < VECTORS; vector++)
+            for (int c = 0; c < CLASSES; c++) {
+                int next = 0;
+                for (int s = STATES - 1; s >= 0; s--) {
+                    int state = stateOf(vector, s);
+                    next = next * STATES + transitions[state][c];
+                    if (c == 0 && (state == FIELD_START || state == OUTSIDE))
+                        OUTSIDE_STARTS[vector] |= 1 << s;
+                }
+                NEXT_VECTOR[vector * CLASSES + c] = (char) next;
+            }
+        int start = 0;
+        for (int s = STATES - 1; s >= 0; s--)
+            start = start * STATES + s;
+        START_VECTOR = start;
+    }
+
+    /*
+     * What scanning a chunk found, for each state the chunk could start in.
+     * endState - The state at the end of the chunk.
+     * firstRow - The position in the file of the first row starting in the chunk, or -1 if none does.
+     */
+    private static class ChunkScan {
+        final int[] endState = new int[STATES];
+        final long[] firstRow = new long[STATES];
+    }
+
+    /*
+     * csv - The file being read.
+     * channel - The file's contents, read by every thread at their own positions.
+     * length - The length of the file when it was opened.
+     * pool - The threads the file is scanned and tokenized on.
+     * window - The number of chunks scanned, and of parts tokenized, ahead of the reader.
+     * chunkSize - The size of the chunks the file is cut into; nextChunk is the index of the next to be scanned.
+     * scans - The chunks being scanned, in file order.
+     * state - The state of a CsvReader at the end of the last chunk whose scan was taken from scans.
+     * partStart - Where the next part to be tokenized starts.
+     * parts - The parts being tokenized, in file order.
+     * rows - The rows of the part being handed out, and position the index of the next of them.
+     */
+    private final File csv;
+    private final FileChannel channel;
+    private final long length;
+    private final ForkJoinPool pool;
+    private final int window;
+    private final long chunkSize;
+    private long nextChunk;
+    private final ArrayDeque<ForkJoinTask<ChunkScan>> scans;
+    private int state;
+    private long partStart;
+    private final ArrayDeque<ForkJoinTask<ArrayList<String[]>>> parts;
+    private ArrayList<String[]> rows;
+    private int position;
+
+    /**
+     * Opens a CSV file; Its first chunks start being scanned, and its first parts tokenized, straight away.
+     *
+     * @param csv         The CSV file to read.
+     * @param parallelism The number of threads to tokenize the file with.
+     * @throws IOException If the file could not be read.
+     */
+    public ChunkedCsvReader(File csv, int parallelism) throws IOException {
+        this(csv, parallelism, CHUNK_SIZE);
+    }
+
+    ChunkedCsvReader(File csv, int parallelism, long chunkSize) throws IOException {
+        this.csv = csv;
+        channel = FileChannel.open(csv.toPath(), StandardOpenOption.READ);
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        window = Math.max(1, parallelism) + 1;
+        this.chunkSize = Math.max(1, chunkSize);
+        scans = new ArrayDeque<>();
+        parts = new ArrayDeque<>();
+        try {
+            length = channel.size();
+            while (scans.size() < window && scanNextChunk())
+                ;
+            // The first chunk starts the first part, so only the state it ends in is needed
+            state = await(scans.poll()).endState[FIELD_START];
+            scanNextChunk();
+            while (parts.size() < window && partStart < length)
+                startNextPart();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the next row, waiting for its part to be tokenized if it has not been yet.
+     *
+     * @return The fields of the row, or null at the end of the file.
+     * @throws IOException If the file could not be read.
+     */
+    @Override
+    public String[] readRow() throws IOException {
+        while (rows == null || position == rows.size()) {
+            if (parts.isEmpty())
+                return null;
+            rows = await(parts.poll());
+            position = 0;
+            if (partStart < length)
+                startNextPart();
+        }
+        return rows.get(position++);
+    }
+
+    /**
+     * Stops tokenizing and closes the file.
+     *
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        scans.forEach(scan -> scan.cancel(true));
+        scans.clear();
+        parts.forEach(part -> part.cancel(true));
+        parts.clear();
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    /*
+    Starts scanning the next chunk on the pool.
+    @returns false if every chunk has already been started
+     */
+    private boolean scanNextChunk() {
+        long start = nextChunk * chunkSize;
+        // An empty file still has one empty chunk
+        if (start >= length && nextChunk > 0)
+            return false;
+        long end = Math.min(length, start + chunkSize);
+        scans.add(pool.submit(() -> scanChunk(start, end)));
+        nextChunk++;
+        return true;
+    }
+
+    /*
+    Chains the scans of the chunks after the current part's start, in file order, until a row starts in one of them.
+    @returns the start of the next part, or the length of the file if the current part runs to its end
+     */
+    private long nextPartStart() throws IOException {
+        while (!scans.isEmpty()) {
+            ChunkScan scan = await(scans.poll());
+            scanNextChunk();
+            long firstRow = scan.firstRow[state];
+            state = scan.endState[state];
+            // A chunk with no row starting in it, inside a long literal, stays part of the row before it
+            if (firstRow != -1 && firstRow < length)
+                return firstRow;
+        }
+        return length;
+    }
+
+    /*
+    Scans a chunk from each state it could start in at once.
+    @param start the position of the chunk in the file
+    @param end the position just after the chunk
+    @returns the state each start state ends in, and where the first row after an unquoted line break starts
+     */
+    private ChunkScan scanChunk(long start, long end) throws IOException {
+        ChunkScan scan = new ChunkScan();
+        Arrays.fill(scan.firstRow, -1);
+        // The start states whose first row has not been found yet
+        int pending = (1 << STATES) - 1;
+        int vector = START_VECTOR;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (long position = start; position < end; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            if (channel.read(buffer, position) < 0)
+                throw new EOFException(csv + " was shortened while it was being read.");
+            byte[] bytes = buffer.array();
+            int count = buffer.position();
+            for (int i = 0; i < count; i++) {
+                int c = BYTE_CLASSES[bytes[i] & 0xFF];
+                if (c == LINE_BREAK && (OUTSIDE_STARTS[vector] & pending) != 0) {
+                    for (int s = 0; s < STATES; s++)
+                        if ((OUTSIDE_STARTS[vector] & pending & 1 << s) != 0)
+                            scan.firstRow[s] = position + i + 1;
+                    pending &= ~OUTSIDE_STARTS[vector];
+                }
+                vector = NEXT_VECTOR[vector * CLASSES + c];
+            }
+            position += count;
+        }
+        for (int s = 0; s < STATES; s++)
+            scan.endState[s] = stateOf(vector, s);
+        return scan;
+    }
+
+    /*
+    @returns the state start state s has led to in a vector of states
+     */
+    private static int stateOf(int vector, int s) {
+        for (int i = 0; i < s; i++)
+            vector /= STATES;
+        return vector % STATES;
+    }
+
+    /*
+    Starts tokenizing the next part on the pool, once the chunks it runs through have been scanned.
+     */
+    private void startNextPart() throws IOException {
+        long start = partStart, end = nextPartStart();
+        parts.add(pool.submit(() -> tokenize(start, end)));
+        partStart = end;
+    }
+
+    /*
+    Reads a part of the file, which starts at the start of a row and ends at the start of another, with a CsvReader.
+    @returns the rows of the part
+     */
+    private ArrayList<String[]> tokenize(long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE - 8)
+            throw new IOException("A row of " + csv + " is too long to be read in parts.");
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        while (bytes.hasRemaining())
+            if (channel.read(bytes, start + bytes.position()) < 0)
+                throw new EOFException(csv + " was shortened while it was being read.");
+        ArrayList<String[]> partRows = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new InputStreamReader(new ByteArrayInputStream(bytes.array()),
+                Charset.defaultCharset()))) {
+            for (String[] row = reader.readRow(); row != null; row = reader.readRow())
+                partRows.add(row);
+        }
+        return partRows;
+    }
+
+    /*
+    Waits for a task on the pool, rethrowing what it threw.
+     */
+    private static <T> T await(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading a CSV file was interrupted.");
+        }
+    }
+}
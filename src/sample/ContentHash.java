@@ -0,0 +1,64 @@
+package sample;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Library class that hashes contents with SHA-1, so the parse and CSV caches and the generated files can tell whether
+ * a file's contents have changed without holding on to them.
+ *
+ * @author Axolotl Development Team
+ */
+public class ContentHash {
+
+    /**
+     * Hashes the contents of a file, reading it a block at a time.
+     *
+     * @param file The file to be hashed.
+     * @return The hash of the file's contents.
+     * @throws IOException If the file could not be read.
+     */
+    public static byte[] of(File file) throws IOException {
+        MessageDigest digest = digest();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer))
+                digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Hashes bytes held in memory, the same way a file holding them would be hashed.
+     *
+     * @param contents The bytes to be hashed.
+     * @return The hash of the bytes.
+     */
+    public static byte[] of(byte[] contents) {
+        return digest().digest(contents);
+    }
+
+    /**
+     * @param hash A hash.
+     * @return The hash in lower case hexadecimal, fit to name a file by.
+     */
+    public static String hex(byte[] hash) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash)
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
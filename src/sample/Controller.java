@@ -42,9 +42,11 @@ public class Controller {
      * user manipulation in the FrontEndGUI class
      */
     private Controller(){
-        desktop = Desktop.getDesktop();
         sourceFiles = new HashSet<>();
         fileParser = new FileParser();
+        fileParser.setParallelism(Runtime.getRuntime().availableProcessors());
+        fileParser.setParseCache(ParseCache.load(new File(ParseCache.DEFAULT_CACHE_FILE), ParseCache.DEFAULT_MAX_BYTES));
+        fileParser.setCsvCache(CsvCache.load(new File(CsvCache.DEFAULT_DIRECTORY)));
         defaultPreference = deserializePreference();
         testFixture = new TestFixture();
         Main.LOGGER.finest("Controller object created and initialized");
@@ -304,6 +306,9 @@ public class Controller {
      * Opens the destination directory selected from the user on the front end GUI.
      */
     public void openDestinationDirectory() {
+        // Looked up on first use, since the AWT desktop is only needed once output has been generated
+        if (desktop == null)
+            desktop = Desktop.getDesktop();
         try {
             desktop.open(destinationFile);
         } catch (IOException e) {
@@ -612,14 +617,5 @@ public class Controller {
         System.out.println(testFixture.getDoubleDefault());
         System.out.println(testFixture.getBooleanDefault() + "\n");
         System.out.println(testFixture.getFlags());
-        File tf = new File(destinationFile.getAbsolutePath() + "/" + testFixture.getFixtureName() + ".h");
-        try ( BufferedWriter bw = new BufferedWriter(new FileWriter(tf))){
-            tf.createNewFile();
-            bw.write(testFixture.toString());
-            bw.close();
-        } catch (IOException e){
-            Main.LOGGER.severe("Error: IOException failed to write Test Fixture");
-        } finally {
-        }
     }
 }
\ No newline at end of file
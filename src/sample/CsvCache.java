@@ -0,0 +1,636 @@
+package sample;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A cache of the rows read from CSV files, shared by every method a CSV file is attached to and kept between runs, so
+ * that a CSV file is only tokenized again once its contents change.
+ * A file is known by its absolute path, size and last modified time, which give the hash of its contents without
+ * reading it; A file that was only touched is found again once its hash is, and files with the same contents share
+ * their rows whatever their paths.
+ * Rows are kept in two tiers: the most recently used tables in memory, kept under a size cap, and every table in its
+ * own file in the cache folder, named by the hash of its contents and laid out a column at a time.
+ * Files too large to hold in memory are only cached in the folder, as a file of rows written while the CSV file is
+ * first read and streamed back a row at a time afterwards; Only files too large for the folder itself are read straight
+ * from the CSV file. The index forgets a file once its table has been evicted from the folder or the file is deleted.
+ * Rows are only cached if the file still has the size and last modified time it had when it was hashed once they have
+ * all been read, so rows read from a file changed in the meantime are never cached under the hash of its old contents.
+ * Safe to use from several threads at once.
+ *
+ * @author Axolotl Development Team
+ */
+public class CsvCache {
+
+    //The program's logger
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    //Default location of the cache folder, next to the parse cache
+    public static final String DEFAULT_DIRECTORY = "csvcache";
+    //Default cap on the estimated size of the tables held in memory
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+    //Default cap on the size of the tables in the cache folder; Large enough for a table of several gigabytes
+    public static final long DEFAULT_MAX_DISK_BYTES = 8L * 1024 * 1024 * 1024;
+
+    //Identify the index file, a table file and a row file, spelling "CUTI", "CUTC" and "CUTR"
+    private static final int INDEX_MAGIC = 0x43555449, TABLE_MAGIC = 0x43555443, ROWS_MAGIC = 0x43555452;
+    //Bumped whenever the layout of the index or table files, or the way CSV files are tokenized, changes
+    private static final int VERSION = 2;
+    //Name of the file in the cache folder mapping CSV files to the hash of their contents
+    private static final String INDEX_FILE = "index.bin";
+    //File type of a table file
+    private static final String TABLE_TYPE = ".cols";
+    //File type of the row file of a table too large to hold in memory
+    private static final String ROWS_TYPE = ".rows";
+
+    /*
+     * directory - The cache folder.
+     * maxMemoryBytes, maxDiskBytes - The caps on the estimated size of the tables in memory and in the cache folder.
+     * index - The size, last modified time and hash of each known CSV file, mapped by its absolute path.
+     * tables - The tables in memory, mapped by the hash of their contents, least recently used first.
+     * memoryBytes - The estimated size of the tables in memory.
+     * memoryHits, diskHits, misses, uncached - Counters of lookups since the cache was loaded; uncached counts files
+     * too large for the cache folder.
+     * dirty - Whether the index has changed since it was loaded or saved.
+     */
+    private final File directory;
+    private final long maxMemoryBytes, maxDiskBytes;
+    private final ConcurrentHashMap<String, IndexEntry> index;
+    private final LinkedHashMap<String, String[][]> tables;
+    private long memoryBytes;
+    private final AtomicLong memoryHits, diskHits, misses, uncached;
+    private volatile boolean dirty;
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param directory      The folder the cache is kept in; It is made when the first table is written.
+     * @param maxMemoryBytes The cap on the estimated size of the tables held in memory.
+     * @param maxDiskBytes   The cap on the size of the tables in the cache folder.
+     */
+    public CsvCache(File directory, long maxMemoryBytes, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        index = new ConcurrentHashMap<>();
+        tables = new LinkedHashMap<>(16, 0.75f, true);
+        memoryHits = new AtomicLong();
+        diskHits = new AtomicLong();
+        misses = new AtomicLong();
+        uncached = new AtomicLong();
+    }
+
+    /**
+     * Loads the index of a cache folder; Tables are only read from the folder when they are first used.
+     * A missing, outdated or damaged index simply gives an empty cache.
+     *
+     * @param directory The folder the cache is kept in.
+     * @return The loaded cache, with the default caps.
+     */
+    public static CsvCache load(File directory) {
+        CsvCache cache = new CsvCache(directory, DEFAULT_MAX_MEMORY_BYTES, DEFAULT_MAX_DISK_BYTES);
+        File indexFile = new File(directory, INDEX_FILE);
+        if (!indexFile.exists())
+            return cache;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("CSV cache is from another version, starting with an empty cache.");
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                IndexEntry entry = IndexEntry.read(in);
+                cache.index.put(entry.path, entry);
+            }
+        } catch (IOException e) {
+            LOGGER.warning("CSV cache could not be read, starting with an empty cache.\n" + e.toString());
+            cache.index.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Opens a CSV file for reading its rows, from the cache if its contents were read before;
+     * Otherwise the file is tokenized, on 'parallelism' threads if it is large, and its rows are cached.
+     *
+     * @param csv         The CSV file to read.
+     * @param parallelism The number of threads a large file may be tokenized with.
+     * @return A reader of the file's rows.
+     * @throws IOException If the file could not be read.
+     */
+    public CsvReader open(File csv, int parallelism) throws IOException {
+        // Taken before the file is hashed, so a change made while it is hashed or read is seen afterwards
+        long size = csv.length(), modified = csv.lastModified();
+        // Its rows would push most other tables out of the folder, if they fit at all
+        if (size > maxDiskBytes / 2) {
+            uncached.incrementAndGet();
+            return CsvReader.open(csv, parallelism);
+        }
+        byte[] hash = hashOf(csv, size, modified);
+        if (size > maxMemoryBytes / 4)
+            return openRows(csv, size, modified, hash, parallelism);
+        String[][] rows = get(hash, csv);
+        if (rows == null) {
+            ArrayList<String[]> read = new ArrayList<>();
+            try (CsvReader reader = CsvReader.open(csv, parallelism)) {
+                for (String[] row = reader.readRow(); row != null; row = reader.readRow())
+                    read.add(row);
+            }
+            rows = read.toArray(new String[read.size()][]);
+            if (unchanged(csv, size, modified))
+                put(csv, hash, rows);
+            else
+                LOGGER.info("CSV file " + csv + " changed while it was read, so its rows are not cached.");
+        }
+        return new TableReader(rows);
+    }
+
+    /*
+    Opens a CSV file too large to hold in memory, streaming its rows back from its row file if its contents were read
+    before; Otherwise the file is tokenized and each row is also written to a new row file as it is handed out, which
+    only takes its place in the cache folder once the last row has been read.
+    @param csv the CSV file
+    @param size, modified the file's size and last modified time when it was hashed
+    @param hash the hash of the file's contents
+    @param parallelism the number of threads the file may be tokenized with
+    @returns a reader of the file's rows
+     */
+    private CsvReader openRows(File csv, long size, long modified, byte[] hash, int parallelism) throws IOException {
+        File rowFile = new File(directory, ContentHash.hex(hash) + ROWS_TYPE);
+        if (rowFile.isFile()) {
+            try {
+                CsvReader rows = new RowFileReader(rowFile);
+                rowFile.setLastModified(System.currentTimeMillis());
+                diskHits.incrementAndGet();
+                return rows;
+            } catch (IOException e) {
+                LOGGER.warning("CSV cache rows " + rowFile + " could not be read, reading " + csv + " again.\n" +
+                        e.toString());
+            }
+        }
+        misses.incrementAndGet();
+        // The folder is trimmed when the cache is saved
+        dirty = true;
+        CsvReader rows = CsvReader.open(csv, parallelism);
+        try {
+            return new RowFileWriter(rows, csv, size, modified, rowFile);
+        } catch (IOException e) {
+            LOGGER.warning("CSV cache rows for " + csv + " could not be written.\n" + e.toString());
+            return rows;
+        }
+    }
+
+    /**
+     * Saves the index to the cache folder if it has changed, and trims the folder's tables to its cap;
+     * The index is written to a temporary file first so a failed save never leaves a half written index behind.
+     *
+     * @throws IOException If the index could not be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("CSV cache folder " + directory + " could not be made.");
+        evictFromDisk();
+        // A file whose table is gone, or which is gone itself, would only be read again the next time it is seen
+        index.values().removeIf(entry -> !new File(entry.path).isFile() || !hasTable(entry.hash));
+        File temp = File.createTempFile("csvcache", ".tmp", directory);
+        // Cleared before the snapshot, so an entry added while saving marks the cache to be saved again
+        dirty = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                ArrayList<IndexEntry> snapshot = new ArrayList<>(index.values());
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (IndexEntry entry : snapshot)
+                    entry.write(out);
+            }
+            Files.move(temp.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getUncached() {
+        return uncached.get();
+    }
+
+    /**
+     * Returns in the format of CSV cache: memory hits memory hits, disk hits disk hits, misses misses, uncached too
+     * large to cache
+     *
+     * @return A string representation of the cache's counters.
+     */
+    public String toString() {
+        return "CSV cache: " + memoryHits.get() + " memory hits, " + diskHits.get() + " disk hits, " + misses.get() +
+                " misses, " + uncached.get() + " too large to cache";
+    }
+
+    /*
+    Finds the hash of a CSV file's contents, only reading the file if it is new or has changed since it was last seen.
+    @param csv the CSV file
+    @param size, modified the file's size and last modified time, taken before it is hashed
+    @returns the hash of the file's contents
+     */
+    private byte[] hashOf(File csv, long size, long modified) throws IOException {
+        IndexEntry entry = index.get(csv.getAbsolutePath());
+        if (entry != null && entry.size == size && entry.modified == modified)
+            return entry.hash;
+        // A new or touched file may have the same contents as one already cached
+        byte[] hash = ContentHash.of(csv);
+        index.put(csv.getAbsolutePath(), new IndexEntry(csv.getAbsolutePath(), size, modified, hash));
+        dirty = true;
+        return hash;
+    }
+
+    /*
+    @returns whether a CSV file still has the size and last modified time it had when it was hashed, so the rows read
+    from it since are those of the hashed contents
+     */
+    private static boolean unchanged(File csv, long size, long modified) {
+        return csv.length() == size && csv.lastModified() == modified;
+    }
+
+    /*
+    Looks up the rows of a CSV file's contents, first in memory and then in the cache folder.
+    @param hash the hash of the file's contents
+    @param csv the CSV file
+    @returns the cached rows, or null if the contents have not been cached
+     */
+    private String[][] get(byte[] hash, File csv) {
+        String key = ContentHash.hex(hash);
+        String[][] rows;
+        synchronized (tables) {
+            rows = tables.get(key);
+        }
+        if (rows != null) {
+            memoryHits.incrementAndGet();
+            return rows;
+        }
+        File tableFile = new File(directory, key + TABLE_TYPE);
+        if (tableFile.isFile()) {
+            try {
+                rows = readTable(tableFile);
+                tableFile.setLastModified(System.currentTimeMillis());
+                keepInMemory(key, rows);
+                diskHits.incrementAndGet();
+                return rows;
+            } catch (IOException e) {
+                LOGGER.warning("CSV cache table " + tableFile + " could not be read, reading " + csv + " again.\n" +
+                        e.toString());
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /*
+    Caches the rows read from a CSV file in memory and in the cache folder.
+    @param csv the CSV file
+    @param hash the hash of the file's contents when it was read
+    @param rows the file's rows
+     */
+    private void put(File csv, byte[] hash, String[][] rows) {
+        String key = ContentHash.hex(hash);
+        dirty = true;
+        keepInMemory(key, rows);
+        try {
+            writeTable(new File(directory, key + TABLE_TYPE), rows);
+        } catch (IOException e) {
+            LOGGER.warning("CSV cache table for " + csv + " could not be written.\n" + e.toString());
+        }
+    }
+
+    /*
+    Holds a table in memory, dropping the least recently used tables until the others fit under the cap.
+     */
+    private void keepInMemory(String key, String[][] rows) {
+        long bytes = estimateBytes(rows);
+        synchronized (tables) {
+            String[][] old = tables.put(key, rows);
+            memoryBytes += bytes - (old == null ? 0 : estimateBytes(old));
+            for (Iterator<Map.Entry<String, String[][]>> eldest = tables.entrySet().iterator();
+                 memoryBytes > maxMemoryBytes && eldest.hasNext(); ) {
+                Map.Entry<String, String[][]> entry = eldest.next();
+                if (entry.getKey().equals(key))
+                    continue;
+                memoryBytes -= estimateBytes(entry.getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    /*
+    @returns whether the table of a file's contents is in the cache folder, as a table file or a row file
+     */
+    private boolean hasTable(byte[] hash) {
+        String key = ContentHash.hex(hash);
+        return new File(directory, key + TABLE_TYPE).isFile() || new File(directory, key + ROWS_TYPE).isFile();
+    }
+
+    /*
+    Deletes the least recently used table and row files until the rest fit under the cap; A table's file is touched each
+    time it is read, so its last modified time is when it was last used.
+     */
+    private void evictFromDisk() {
+        File[] tableFiles = directory.listFiles((dir, name) -> name.endsWith(TABLE_TYPE) || name.endsWith(ROWS_TYPE));
+        if (tableFiles == null)
+            return;
+        long total = 0;
+        for (File tableFile : tableFiles)
+            total += tableFile.length();
+        Arrays.sort(tableFiles, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < tableFiles.length && total > maxDiskBytes; i++) {
+            total -= tableFiles[i].length();
+            tableFiles[i].delete();
+        }
+    }
+
+    /*
+    Writes a table file: the row count, the column count and the width of each row unless every row is as wide as
+    there are columns, then each column's values in row order, skipping rows too narrow to have one; A value is its
+    length in UTF-8 bytes followed by the bytes.
+    The table is written to a temporary file first, so a table file is always whole.
+     */
+    private void writeTable(File tableFile, String[][] rows) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("CSV cache folder " + directory + " could not be made.");
+        int columns = 0;
+        boolean ragged = false;
+        for (String[] row : rows) {
+            ragged |= row.length != rows[0].length;
+            columns = Math.max(columns, row.length);
+        }
+        File temp = File.createTempFile("csvtable", ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(TABLE_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(rows.length);
+                out.writeInt(columns);
+                out.writeBoolean(ragged);
+                if (ragged)
+                    for (String[] row : rows)
+                        out.writeInt(row.length);
+                for (int c = 0; c < columns; c++)
+                    for (String[] row : rows)
+                        if (c < row.length) {
+                            byte[] bytes = row[c].getBytes(StandardCharsets.UTF_8);
+                            out.writeInt(bytes.length);
+                            out.write(bytes);
+                        }
+            }
+            Files.move(temp.toPath(), tableFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /*
+    Reads a table file written by writeTable.
+    @returns the rows of the table
+     */
+    private static String[][] readTable(File tableFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(tableFile)))) {
+            if (in.readInt() != TABLE_MAGIC || in.readInt() != VERSION)
+                throw new IOException("Table is from another version.");
+            String[][] rows = new String[in.readInt()][];
+            int columns = in.readInt();
+            boolean ragged = in.readBoolean();
+            for (int r = 0; r < rows.length; r++)
+                rows[r] = new String[ragged ? in.readInt() : columns];
+            byte[] bytes = new byte[256];
+            for (int c = 0; c < columns; c++)
+                for (String[] row : rows)
+                    if (c < row.length) {
+                        int length = in.readInt();
+                        if (length > bytes.length)
+                            bytes = new byte[Math.max(length, bytes.length * 2)];
+                        in.readFully(bytes, 0, length);
+                        row[c] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                    }
+            return rows;
+        }
+    }
+
+    /*
+    Roughly how much memory a table takes, counting two bytes a character and a fixed overhead for each row and value.
+     */
+    private static long estimateBytes(String[][] rows) {
+        long estimate = 16;
+        for (String[] row : rows) {
+            estimate += 16 + 8L * row.length;
+            for (String value : row)
+                estimate += 40 + 2L * value.length();
+        }
+        return estimate;
+    }
+
+    /**
+     * Hands out the cached rows of a CSV file; Each row is a copy, so a reader can not change the cached table.
+     */
+    private static class TableReader extends CsvReader {
+        private final String[][] rows;
+        private int next;
+
+        TableReader(String[][] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public String[] readRow() {
+            return next < rows.length ? rows[next++].clone() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Streams the rows of a row file back a row at a time: each row is its width followed by its values, each value its
+     * length in UTF-8 bytes followed by the bytes, and a width of -1 ends the file.
+     */
+    private static class RowFileReader extends CsvReader {
+        private final DataInputStream in;
+        private byte[] bytes;
+
+        RowFileReader(File rowFile) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(rowFile), 1 << 16));
+            try {
+                if (in.readInt() != ROWS_MAGIC || in.readInt() != VERSION)
+                    throw new IOException("Row file is from another version.");
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            bytes = new byte[256];
+        }
+
+        @Override
+        public String[] readRow() throws IOException {
+            int width = in.readInt();
+            if (width < 0)
+                return null;
+            String[] row = new String[width];
+            for (int c = 0; c < width; c++) {
+                int length = in.readInt();
+                if (length > bytes.length)
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                in.readFully(bytes, 0, length);
+                row[c] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Hands out the rows of a CSV file as they are tokenized, writing each to a temporary row file as well; Once the last
+     * row has been handed out the row file is moved into the cache folder, unless the CSV file changed while it was
+     * read, and if the rows are not all read it is deleted. The cache only saves time, so a row file that can not be
+     * written is dropped without failing the read.
+     */
+    private class RowFileWriter extends CsvReader {
+        private final CsvReader rows;
+        private final File csv, rowFile, temp;
+        private final long size, modified;
+        private DataOutputStream out;
+
+        RowFileWriter(CsvReader rows, File csv, long size, long modified, File rowFile) throws IOException {
+            this.rows = rows;
+            this.csv = csv;
+            this.size = size;
+            this.modified = modified;
+            this.rowFile = rowFile;
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("CSV cache folder " + directory + " could not be made.");
+            temp = File.createTempFile("csvrows", ".tmp", directory);
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+                out.writeInt(ROWS_MAGIC);
+                out.writeInt(VERSION);
+            } catch (IOException e) {
+                abandon();
+                throw e;
+            }
+        }
+
+        @Override
+        public String[] readRow() throws IOException {
+            String[] row = rows.readRow();
+            if (out == null)
+                return row;
+            try {
+                if (row == null) {
+                    out.writeInt(-1);
+                    out.close();
+                    out = null;
+                    if (unchanged(csv, size, modified))
+                        Files.move(temp.toPath(), rowFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    else {
+                        LOGGER.info("CSV file " + csv + " changed while it was read, so its rows are not cached.");
+                        temp.delete();
+                    }
+                } else {
+                    out.writeInt(row.length);
+                    for (String value : row) {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warning("CSV cache rows " + rowFile + " could not be written.\n" + e.toString());
+                abandon();
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                rows.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        /*
+        Stops writing the row file, deleting what was written of it unless it has been moved into the cache folder.
+         */
+        private void abandon() {
+            try {
+                if (out != null)
+                    out.close();
+            } catch (IOException e) {
+                // The file is deleted anyway
+            }
+            out = null;
+            temp.delete();
+        }
+    }
+
+    /**
+     * What is known of one CSV file: its size and last modified time when its contents had the hash.
+     */
+    private static class IndexEntry {
+        final String path;
+        final long size, modified;
+        final byte[] hash;
+
+        IndexEntry(String path, long size, long modified, byte[] hash) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeByte(hash.length);
+            out.write(hash);
+        }
+
+        static IndexEntry read(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            long size = in.readLong(), modified = in.readLong();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new IndexEntry(path, size, modified, hash);
+        }
+    }
+}
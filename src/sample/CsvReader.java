@@ -0,0 +1,140 @@
+package sample;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Reads a CSV file one row at a time, so that files of any size can be read with only the current row in memory.
+ * Fields hold C++ literals that are written into the unit tests as they are, so quotes are kept in the field text;
+ * A comma or line break inside a string or character literal does not end the field, and a backslash inside a literal
+ * escapes the character after it, so "a,b" and 'x' are single fields.
+ * A single quote only opens a character literal at the start of a field, after nothing but spaces and tabs; Elsewhere
+ * it is an ordinary character, such as the digit separator of 1'000.
+ * The read buffer, the field buffer and the list of fields are reused from row to row.
+ *
+ * @author Axolotl Development Team
+ */
+public class CsvReader implements Closeable {
+
+    /*
+     * in - The CSV text being read.
+     * buffer - Holds the characters read from in but not yet tokenized; position and limit bound them.
+     * field - The text of the field being read.
+     * fields - The fields of the row being read.
+     */
+    private final Reader in;
+    private final char[] buffer;
+    private int position, limit;
+    private final StringBuilder field;
+    private final ArrayList<String> fields;
+
+    /*
+    Creates a reader handing out rows it reads some other way, by overriding readRow and close.
+     */
+    CsvReader() {
+        this(null);
+    }
+
+    /**
+     * Creates a new reader over CSV text.
+     *
+     * @param in The CSV text, read from its current position to its end.
+     */
+    public CsvReader(Reader in) {
+        this.in = in;
+        buffer = new char[8192];
+        field = new StringBuilder();
+        fields = new ArrayList<>();
+    }
+
+    /**
+     * Opens a CSV file for reading; A file of several megabytes is tokenized on 'parallelism'
+     * threads at once by a ChunkedCsvReader, handing out its rows in the same order.
+     *
+     * @param csv         The CSV file to read.
+     * @param parallelism The number of threads a large file may be tokenized with.
+     * @return A reader of the file's rows.
+     * @throws IOException If the file could not be opened.
+     */
+    public static CsvReader open(File csv, int parallelism) throws IOException {
+        if (parallelism > 1 && csv.length() >= ChunkedCsvReader.MIN_LENGTH)
+            return new ChunkedCsvReader(csv, parallelism);
+        return new CsvReader(new FileReader(csv));
+    }
+
+    /**
+     * Reads the next row;
+     * Blank lines are skipped, and the carriage return of a Windows line break is dropped.
+     *
+     * @return The fields of the row, or null at the end of the text.
+     * @throws IOException If the text could not be read.
+     */
+    public String[] readRow() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        // The quote character of the literal being read, or 0 if none
+        char quote = 0;
+        // Whether the field read so far is only spaces and tabs
+        boolean start = true;
+        boolean escaped = false;
+        for (int c = read(); ; c = read()) {
+            if (c == -1) {
+                if (fields.isEmpty() && field.length() == 0)
+                    return null;
+                break;
+            }
+            if (quote != 0) {
+                field.append((char) c);
+                if (escaped)
+                    escaped = false;
+                else if (c == '\\')
+                    escaped = true;
+                else if (c == quote)
+                    quote = 0;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                start = true;
+            } else if (c == '\n') {
+                if (!fields.isEmpty() || field.length() > 0)
+                    break;
+            } else if (c != '\r') {
+                if (c == '"' || (c == '\'' && start))
+                    quote = (char) c;
+                start &= c == ' ' || c == '\t';
+                field.append((char) c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Closes the text being read.
+     *
+     * @throws IOException If the text could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /*
+    @returns the next character of the text, or -1 at its end
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,320 @@
+package sample;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * A single pass recognizer for the method declarations the FileParser looks for in a header file.
+ * Characters are read once, in order, and never revisited, so a file is scanned in time linear to its length no matter
+ * how long or oddly formatted its lines are.
+ * A declaration is recognized in the form methodReturnType methodName(paramType1 param1, paramType2 param2,...) followed
+ * by any trailing qualifiers; the body of a method defined in the header is skipped without being read for methods.
+ *
+ * @author Axolotl Development Team
+ */
+public class DeclarationScanner {
+
+    /*
+     * States of the comment recognizer;
+     * CODE - Reading ordinary text.
+     * SLASH - A '/' was read and may start a comment.
+     * LINE_COMMENT - Inside a // comment.
+     * BLOCK_COMMENT - Inside a block comment.
+     * BLOCK_STAR - Inside a block comment, just after a '*' that may close it.
+     */
+    private static final int CODE = 0, SLASH = 1, LINE_COMMENT = 2, BLOCK_COMMENT = 3, BLOCK_STAR = 4;
+
+    //The name of the class the recognized methods belong to
+    private final String className;
+    //The recognized methods
+    private final ArrayList<Method> methods;
+
+    /*
+     * line - The current logical line with any comments cut out; reused from line to line.
+     * length - The number of characters of the current logical line stored in line.
+     * parenDepth - The number of parenthesis left open on the current logical line.
+     * state - The current state of the comment recognizer.
+     */
+    private char[] line;
+    private int length, parenDepth, state;
+
+    /*
+     * skipping - Whether a method body is being skipped.
+     * awaitingBrace - Whether the body being skipped has not opened its curly brace yet.
+     * braceDepth - The number of curly braces left open in the body being skipped.
+     * literal - The quote character of the string or character literal being skipped, or 0 if none.
+     * escaped - Whether the last character of the literal being skipped was a backslash.
+     */
+    private boolean skipping, awaitingBrace, escaped;
+    private int braceDepth;
+    private char literal;
+
+    /**
+     * Creates a new scanner for the methods of one class.
+     *
+     * @param className The name of the class the scanned methods belong to.
+     */
+    public DeclarationScanner(String className) {
+        this.className = className;
+        methods = new ArrayList<>();
+        line = new char[256];
+    }
+
+    /**
+     * Reads the rest of the passed reader and returns every method declared in it.
+     *
+     * @param reader The reader of the file to be scanned; it is read to its end but not closed.
+     * @return The list of methods declared in the read text.
+     * @throws IOException If an I/O exception occurred while reading.
+     * @throws IllegalArgumentException If the read text does not close the curly brace of a method body.
+     */
+    public ArrayList<Method> scan(Reader reader) throws IOException {
+        char[] chunk = new char[8192];
+        for (int read = reader.read(chunk); read != -1; read = reader.read(chunk))
+            for (int i = 0; i < read; i++)
+                accept(chunk[i]);
+        if (state == SLASH)
+            code('/');
+        // The last line of a file does not need to end in a line break
+        recognizeLine();
+        if (skipping && !awaitingBrace)
+            throw new IllegalArgumentException("This file does not close a curly brace.");
+        return methods;
+    }
+
+    /*
+    Runs one character through the comment recognizer;
+    Comments are cut out, line breaks end the logical line and everything else is treated as code.
+    @param c the next character of the file
+     */
+    private void accept(char c) {
+        switch (state) {
+            case LINE_COMMENT:
+                if (c == '\n') {
+                    state = CODE;
+                    endOfLine();
+                }
+                return;
+            case BLOCK_STAR:
+                // Anything but another '*' or the closing '/' leaves the character part of the comment
+                if (c == '/')
+                    state = CODE;
+                else if (c != '*') {
+                    state = BLOCK_COMMENT;
+                    if (c == '\n')
+                        endOfLine();
+                }
+                return;
+            case BLOCK_COMMENT:
+                if (c == '*')
+                    state = BLOCK_STAR;
+                else if (c == '\n')
+                    endOfLine();
+                return;
+            case SLASH:
+                state = CODE;
+                if (c == '/') {
+                    state = LINE_COMMENT;
+                    return;
+                }
+                if (c == '*') {
+                    state = BLOCK_COMMENT;
+                    return;
+                }
+                code('/');
+                break;
+            default:
+                break;
+        }
+        // Comment markers inside a literal of a skipped body are part of the literal
+        if (c == '/' && literal == 0)
+            state = SLASH;
+        else if (c == '\n')
+            endOfLine();
+        else
+            code(c);
+    }
+
+    /*
+    Handles one character of code, either adding it to the logical line or using it to skip a method body.
+    @param c the character of code
+     */
+    private void code(char c) {
+        if (skipping) {
+            skip(c);
+            return;
+        }
+        if (c == '(')
+            parenDepth++;
+        else if (c == ')' && parenDepth > 0)
+            parenDepth--;
+        if (length == line.length) {
+            char[] bigger = new char[line.length * 2];
+            System.arraycopy(line, 0, bigger, 0, length);
+            line = bigger;
+        }
+        line[length++] = c;
+    }
+
+    /*
+    Ends the current physical line;
+    It is possible that, due to page space constraints, the parameters were declared across different lines;
+    So the logical line only ends when every open parenthesis has been closed.
+     */
+    private void endOfLine() {
+        // Literals can not span lines, so an unclosed one was not a literal to begin with
+        literal = 0;
+        escaped = false;
+        if (skipping)
+            return;
+        if (parenDepth > 0) {
+            code(' ');
+            return;
+        }
+        recognizeLine();
+    }
+
+    /*
+    Looks for declarations in the current logical line, then clears it;
+    Anything past a recognized declaration is used to skip its body,
+    after which the rest of the line is searched for another declaration.
+     */
+    private void recognizeLine() {
+        int position = 0;
+        while (position < length && !skipping) {
+            int close = recognizeDeclaration(position);
+            if (close == -1)
+                break;
+            skipping = true;
+            awaitingBrace = true;
+            braceDepth = 0;
+            position = close + 1;
+            while (position < length && skipping)
+                skip(line[position++]);
+        }
+        length = 0;
+        parenDepth = 0;
+    }
+
+    /*
+    Checks if the logical line matches methodReturnType methodName(paramType1 param1, paramType2 param2,...) starting
+    at the given position and, if it does, stores the method;
+    Even though this could allow methods with improperly formatted parts, ie Stri[]ng or a method name with illegal
+    characters, these uncompilable parts are not expected in the passed files.
+    @param start the position in the logical line to start from
+    @returns the position of the close parenthesis of the declaration, or -1 if the line does not match
+     */
+    private int recognizeDeclaration(int start) {
+        int i = skipSpace(start);
+        int returnStart = i;
+        i = skipWord(i);
+        int returnEnd = i;
+        // The return type and the method name must be separated by at least one white space
+        if (returnEnd == returnStart || i == skipSpace(i))
+            return -1;
+        i = skipSpace(i);
+        int nameStart = i;
+        i = skipWord(i);
+        int nameEnd = i;
+        i = skipSpace(i);
+        if (nameEnd == nameStart || i == length || line[i] != '(')
+            return -1;
+        i = skipSpace(i + 1);
+
+        /* Reads the parameters, each a type and a name separated by white space;
+           The last word of a parameter is its name and is discarded, every word before it makes up its type,
+           so types of several words such as const char* or unsigned int are kept whole.
+         */
+        ArrayList<String> paramTypes = new ArrayList<>();
+        while (i < length && line[i] != ')') {
+            int typeStart = i, typeEnd = i, wordEnd = i, words = 0;
+            while (i < length && line[i] != ',' && line[i] != ')') {
+                int wordStart = i;
+                i = skipWord(i);
+                // An open parenthesis inside the parameters is not part of a declaration
+                if (i == wordStart)
+                    return -1;
+                if (words++ > 0)
+                    typeEnd = wordEnd;
+                wordEnd = i;
+                i = skipSpace(i);
+            }
+            if (words < 2)
+                return -1;
+            paramTypes.add(new String(line, typeStart, typeEnd - typeStart));
+            if (i < length && line[i] == ',')
+                i = skipSpace(i + 1);
+        }
+        if (i == length)
+            return -1;
+        // Accounts for the possibility that there are no parameters
+        if (paramTypes.isEmpty())
+            paramTypes.add("");
+
+        String[] paramArray = new String[paramTypes.size()];
+        paramTypes.toArray(paramArray);
+        methods.add(new Method(className, new String(line, returnStart, returnEnd - returnStart),
+                new String(line, nameStart, nameEnd - nameStart), paramArray));
+        return i;
+    }
+
+    /*
+    Uses one character of code to skip a method body;
+    Until the body opens its curly brace a semicolon means the method was only declared and has no body.
+    @param c the character of code
+     */
+    private void skip(char c) {
+        if (literal != 0) {
+            if (escaped)
+                escaped = false;
+            else if (c == '\\')
+                escaped = true;
+            else if (c == literal)
+                literal = 0;
+            return;
+        }
+        switch (c) {
+            case '"':
+            case '\'':
+                literal = c;
+                break;
+            case ';':
+                if (awaitingBrace)
+                    skipping = false;
+                break;
+            case '{':
+                awaitingBrace = false;
+                braceDepth++;
+                break;
+            case '}':
+                if (!awaitingBrace && --braceDepth == 0)
+                    skipping = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /*
+    @returns the first position at or after i that is not white space
+     */
+    private int skipSpace(int i) {
+        while (i < length && isSpace(line[i]))
+            i++;
+        return i;
+    }
+
+    /*
+    @returns the first position at or after i that is white space, a parenthesis or a comma
+     */
+    private int skipWord(int i) {
+        while (i < length && !isSpace(line[i]) && line[i] != '(' && line[i] != ')' && line[i] != ',')
+            i++;
+        return i;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+}
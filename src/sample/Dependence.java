@@ -84,18 +84,22 @@ public class Dependence implements Comparable<Dependence>{
     }
 
     /**
+     * Two Dependence objects are equal if they describe the same class, in keeping with compareTo.
      *
-     * @return
+     * @param o The object to be compared.
+     * @return true if o is a Dependence of the same class.
      */
-    public String toMakeString() {
-        StringBuilder toReturn = new StringBuilder();
-        toReturn.append(className + ".o: " + className + ".cpp");
-        for(int i = 0; i < dependencies.length; i++)
-            toReturn.append(" " + dependencies[i] + ".h");
-        toReturn.append("\n\t$(CC) $(FLAGS) " + className + ".cpp");
-        for(int i = 0; i < dependencies.length; i++)
-            toReturn.append(" " + dependencies[i] + ".cpp");
-        toReturn.append("\n\n");
-        return toReturn.toString();
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Dependence && className.equals(((Dependence) o).className);
+    }
+
+    /**
+     *
+     * @return The hash of the class name.
+     */
+    @Override
+    public int hashCode() {
+        return className.hashCode();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * The include graph of a project, built from the Dependence of each of its .cpp files.
+ * Every class name is interned to an int id, and the edges from a class to the classes it includes are stored in
+ * primitive arrays, so graphs of hundreds of thousands of classes are built and searched without boxing or per-edge
+ * objects.
+ * Answers which classes a class depends on directly or transitively, which classes depend on it, which classes include
+ * each other in a cycle, and in what order the classes can be built.
+ *
+ * @author Axolotl Development Team
+ */
+public class DependencyGraph {
+
+    /*
+     * ids - Each class name mapped to its id.
+     * names - Each id's class name.
+     * sources - Each id's Dependence, or null for a class that was only seen being included.
+     * offsets, targets - The classes that class i includes are targets[offsets[i]] up to targets[offsets[i + 1]].
+     * reverseOffsets, reverseTargets - The same layout for the classes that include class i.
+     */
+    private final HashMap<String, Integer> ids;
+    private final ArrayList<String> names;
+    private final ArrayList<Dependence> sources;
+    private int[] offsets, targets, reverseOffsets, reverseTargets;
+
+    private DependencyGraph() {
+        ids = new HashMap<>();
+        names = new ArrayList<>();
+        sources = new ArrayList<>();
+    }
+
+    /**
+     * Builds the graph of a project;
+     * The empty name standing for no dependencies and a class including its own header are not edges, and a class
+     * listed more than once, or including the same class more than once, has a single edge to each class it includes.
+     *
+     * @param dependencies The Dependence of each .cpp file of the project.
+     * @return The project's include graph.
+     */
+    public static DependencyGraph build(Collection<Dependence> dependencies) {
+        DependencyGraph graph = new DependencyGraph();
+        for (Dependence dep : dependencies)
+            graph.sources.set(graph.intern(dep.getClassName()), dep);
+
+        // Counts each class's edges first, so they can be laid out in a single array
+        int edgeCount = 0;
+        int[] from = new int[16], to = new int[16];
+        for (Dependence dep : dependencies) {
+            int source = graph.ids.get(dep.getClassName());
+            for (String included : dep.getDependencies()) {
+                if (included.isEmpty())
+                    continue;
+                int target = graph.intern(included);
+                if (target == source)
+                    continue;
+                if (edgeCount == from.length) {
+                    from = Arrays.copyOf(from, edgeCount * 2);
+                    to = Arrays.copyOf(to, edgeCount * 2);
+                }
+                from[edgeCount] = source;
+                to[edgeCount++] = target;
+            }
+        }
+        int size = graph.names.size();
+        graph.offsets = new int[size + 1];
+        graph.reverseOffsets = new int[size + 1];
+        graph.targets = layOut(from, to, edgeCount, graph.offsets);
+        graph.reverseTargets = layOut(to, from, edgeCount, graph.reverseOffsets);
+        return graph;
+    }
+
+    /**
+     * @return The number of classes in the graph, which are numbered 0 up to this size.
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @param className The name of a class.
+     * @return The class's id, or -1 if the class is not in the graph.
+     */
+    public int idOf(String className) {
+        Integer id = ids.get(className);
+        return id == null ? -1 : id;
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @param id The id of a class.
+     * @return The Dependence the class was read from, or null if the class has no .cpp file of its own.
+     */
+    public Dependence dependenceOf(int id) {
+        return sources.get(id);
+    }
+
+    /**
+     * @param id The id of a class.
+     * @return The ids of the classes the class includes directly.
+     */
+    public int[] dependenciesOf(int id) {
+        return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+    }
+
+    /**
+     * @param id The id of a class.
+     * @return The ids of every class the class depends on directly or through other classes.
+     */
+    public BitSet transitiveDependencies(int id) {
+        return reach(id, offsets, targets);
+    }
+
+    /**
+     * Finds every class that would be affected by a change to a class.
+     *
+     * @param id The id of a class.
+     * @return The ids of every class that depends on the class directly or through other classes.
+     */
+    public BitSet transitiveDependents(int id) {
+        return reach(id, reverseOffsets, reverseTargets);
+    }
+
+    /**
+     * Finds the strongly connected components of the graph with Tarjan's algorithm, run without recursion so that
+     * long include chains can not overflow the stack.
+     * A component of more than one class is a set of classes that include each other in a cycle.
+     *
+     * @return The components, each a list of class ids, with every component after the components it depends on.
+     */
+    public int[][] stronglyConnectedComponents() {
+        int size = size();
+        int[] index = new int[size], low = new int[size], stack = new int[size], callStack = new int[size],
+                nextEdge = new int[size];
+        Arrays.fill(index, -1);
+        BitSet onStack = new BitSet(size);
+        ArrayList<int[]> components = new ArrayList<>();
+        int counter = 0, stackSize = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (index[root] != -1)
+                continue;
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = low[root] = counter++;
+            nextEdge[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack.set(root);
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < offsets[node + 1]) {
+                    int target = targets[nextEdge[node]++];
+                    if (index[target] == -1) {
+                        index[target] = low[target] = counter++;
+                        nextEdge[target] = offsets[target];
+                        stack[stackSize++] = target;
+                        onStack.set(target);
+                        callStack[depth++] = target;
+                    } else if (onStack.get(target))
+                        low[node] = Math.min(low[node], index[target]);
+                    continue;
+                }
+                // Every edge of the node has been followed
+                depth--;
+                if (depth > 0)
+                    low[callStack[depth - 1]] = Math.min(low[callStack[depth - 1]], low[node]);
+                if (low[node] == index[node]) {
+                    int start = stackSize;
+                    do {
+                        onStack.clear(stack[--start]);
+                    } while (stack[start] != node);
+                    components.add(Arrays.copyOfRange(stack, start, stackSize));
+                    stackSize = start;
+                }
+            }
+        }
+        return components.toArray(new int[components.size()][]);
+    }
+
+    /**
+     * @return The components of more than one class, each a set of classes that include each other.
+     */
+    public ArrayList<int[]> cycles() {
+        ArrayList<int[]> cycles = new ArrayList<>();
+        for (int[] component : stronglyConnectedComponents())
+            if (component.length > 1)
+                cycles.add(component);
+        return cycles;
+    }
+
+    /**
+     * Orders the classes so that each comes after the classes it includes;
+     * Classes that include each other in a cycle are kept next to each other.
+     *
+     * @return Every class id, in an order the classes can be built in.
+     */
+    public int[] buildOrder() {
+        int[] order = new int[size()];
+        int position = 0;
+        for (int[] component : stronglyConnectedComponents())
+            for (int id : component)
+                order[position++] = id;
+        return order;
+    }
+
+    /**
+     * @return The Dependence of every class that has a .cpp file, in build order.
+     */
+    public ArrayList<Dependence> dependencesInBuildOrder() {
+        ArrayList<Dependence> ordered = new ArrayList<>();
+        for (int id : buildOrder())
+            if (sources.get(id) != null)
+                ordered.add(sources.get(id));
+        return ordered;
+    }
+
+    /*
+    Gives a class name an id, adding it to the graph if it is new.
+    @param name the name of the class
+    @returns the class's id
+     */
+    private int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        ids.put(name, names.size());
+        names.add(name);
+        sources.add(null);
+        return names.size() - 1;
+    }
+
+    /*
+    Sorts edges into the offsets/targets layout by counting the edges of each class, then drops the repeated edges of
+    each class, so that searches never follow the same edge twice.
+    @param offsets filled with where each class's edges start, sized one more than the number of classes
+    @returns the targets of the edges
+     */
+    private static int[] layOut(int[] from, int[] to, int edgeCount, int[] offsets) {
+        for (int i = 0; i < edgeCount; i++)
+            offsets[from[i] + 1]++;
+        for (int i = 1; i < offsets.length; i++)
+            offsets[i] += offsets[i - 1];
+        int[] targets = new int[edgeCount];
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int i = 0; i < edgeCount; i++)
+            targets[fill[from[i]]++] = to[i];
+
+        // lastSource[t] is the last class found with an edge to t, so each class's edges are checked in one pass
+        int[] lastSource = new int[offsets.length - 1];
+        Arrays.fill(lastSource, -1);
+        int kept = 0;
+        for (int node = 0; node < offsets.length - 1; node++) {
+            int start = offsets[node], end = offsets[node + 1];
+            offsets[node] = kept;
+            for (int e = start; e < end; e++) {
+                int target = targets[e];
+                if (lastSource[target] != node) {
+                    lastSource[target] = node;
+                    targets[kept++] = target;
+                }
+            }
+        }
+        offsets[offsets.length - 1] = kept;
+        return kept == edgeCount ? targets : Arrays.copyOf(targets, kept);
+    }
+
+    /*
+    Finds every class reachable from a class by following the given edges.
+    @returns the ids of the reached classes; the class itself is only included if it is part of a cycle
+     */
+    private BitSet reach(int id, int[] edgeOffsets, int[] edgeTargets) {
+        BitSet reached = new BitSet(size());
+        int[] queue = new int[size() + 1];
+        int head = 0, tail = 0;
+        queue[tail++] = id;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = edgeOffsets[node]; e < edgeOffsets[node + 1]; e++) {
+                int target = edgeTargets[e];
+                if (!reached.get(target)) {
+                    reached.set(target);
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return reached;
+    }
+}
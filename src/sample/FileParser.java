@@ -1,9 +1,20 @@
 package sample;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 /**
  * A statically used class that takes an array of cpp and header files and reads them;
@@ -13,12 +24,23 @@ import java.util.HashSet;
  */
 public class FileParser {
 
+    //The program's logger, looked up by name so that parsing never loads the JavaFX Main class
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
     //Methods Field Declaration
     private ArrayList<Method> methods;
     //Dependencies Field Declaration
     private HashSet<Dependence> dependencies;
     //Parameters for a makefile to be generated with
     private TestFixture fixture;
+    //Number of threads source files are parsed with
+    private int parallelism;
+    //Whether .cpp files are read to their end for includes rather than just their heading
+    private boolean scanWholeFileForIncludes;
+    //Results of earlier parses, or null if every file is to be parsed
+    private ParseCache parseCache;
+    //Rows of CSV files read before, or null if every CSV file is to be read
+    private CsvCache csvCache;
 
     /**
      * Constructor for the FileParser class that initializes methods and dependencies instance variables
@@ -27,6 +49,7 @@ public class FileParser {
         methods = new ArrayList<>();
         dependencies = new HashSet<>();
         fixture = new TestFixture();
+        parallelism = 1;
     }
 
     public ArrayList<Method> getMethods() {
@@ -45,118 +68,314 @@ public class FileParser {
         this.dependencies = dependencies;
     }
 
+    /**
+     * Accessor method for the 'parallelism' attribute that returns said attribute.
+     * @return The number of threads used to parse source files; 1 means files are parsed one after the other.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Setter method for the 'parallelism' attribute.
+     * @param parallelism The number of threads to parse source files with; values below 1 are treated as 1.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Accessor method for the 'scanWholeFileForIncludes' attribute that returns said attribute.
+     * @return Whether .cpp files are read to their end for #include directives.
+     */
+    public boolean getScanWholeFileForIncludes() {
+        return scanWholeFileForIncludes;
+    }
+
+    /**
+     * Setter method for the 'scanWholeFileForIncludes' attribute;
+     * By default the reading of a .cpp file stops at its first curly brace, since includes head a file.
+     * @param scanWholeFileForIncludes Whether .cpp files should be read to their end for #include directives.
+     */
+    public void setScanWholeFileForIncludes(boolean scanWholeFileForIncludes) {
+        this.scanWholeFileForIncludes = scanWholeFileForIncludes;
+    }
+
+    /**
+     * Accessor method for the 'parseCache' attribute that returns said attribute.
+     * @return The cache of earlier parses, or null if none is used.
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Setter method for the 'parseCache' attribute;
+     * With a cache, files that have not changed since they were last parsed are not read again.
+     * @param parseCache The cache of earlier parses, or null to parse every file.
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Accessor method for the 'csvCache' attribute that returns said attribute.
+     * @return The cache of CSV files read before, or null if none is used.
+     */
+    public CsvCache getCsvCache() {
+        return csvCache;
+    }
+
+    /**
+     * Setter method for the 'csvCache' attribute;
+     * With a cache, the unit tests read each CSV file once however many methods it is attached to, and not again
+     * until it changes.
+     * @param csvCache The cache of CSV files read before, or null to read every CSV file.
+     */
+    public void setCsvCache(CsvCache csvCache) {
+        this.csvCache = csvCache;
+    }
+
     /**
      * Receives the files to be parsed and extracts the necessary information;
      * Currently prints that information to the console, but will ultimately pass the information to the file writers.
+     * When the parallelism is above 1 the files are parsed on a work-stealing pool, but the results are still added in
+     * the order of the passed array.
      *
      * @param projectFiles The array of files to be read.
      * Will ultimately return the makefiles and the unit test and test fixture files.
      * @throws IOException Thrown if an IOException was experienced by BufferedReader reading a passed file.
      */
     public void parseSourceFiles(File[] projectFiles) throws IOException {
-        for (File cFile : projectFiles) {
-            if (cFile.getName().endsWith(".cpp")) {
-                Dependence dep = makeDependence(cFile);
-                if (dep != null)
-                    dependencies.add(dep);
-            }
-            else if (cFile.getName().endsWith(".h")) {
-                Method[] met = makeMethods(cFile);
-                if(met != null)
-                    methods.addAll(Arrays.asList(met));
-            }
-            else {
-                Main.LOGGER.warning("An unexpected file has been passed.");
-                throw new IOException("An unexpected file has been passed.");
+        ParseResult[] results;
+        if (parallelism > 1 && projectFiles.length > 1)
+            results = parseInParallel(projectFiles);
+        else {
+            results = new ParseResult[projectFiles.length];
+            for (int i = 0; i < projectFiles.length; i++)
+                results[i] = parseFile(projectFiles[i]);
+        }
+        for (ParseResult result : results) {
+            if (result.dependence != null)
+                dependencies.add(result.dependence);
+            if (result.methods != null)
+                methods.addAll(Arrays.asList(result.methods));
+        }
+        saveParseCache();
+    }
+
+    /**
+     * Reports the parse cache's counters and saves it, if a cache is used;
+     * The cache only saves time, so failing to save it is logged rather than failing the parse.
+     */
+    void saveParseCache() {
+        if (parseCache == null)
+            return;
+        LOGGER.info(parseCache.toString());
+        try {
+            parseCache.save();
+        } catch (IOException e) {
+            LOGGER.warning("Parse cache could not be saved.\n" + e.toString());
+        }
+    }
+
+    /**
+     * Reports the CSV cache's counters and saves it, if a cache is used;
+     * Like the parse cache, failing to save it is logged rather than failing the generation.
+     */
+    void saveCsvCache() {
+        if (csvCache == null)
+            return;
+        LOGGER.info(csvCache.toString());
+        try {
+            csvCache.save();
+        } catch (IOException e) {
+            LOGGER.warning("CSV cache could not be saved.\n" + e.toString());
+        }
+    }
+
+    /**
+     * Parses every passed file on a pool of 'parallelism' threads;
+     * The largest files are scheduled first so that a large file picked up last does not leave the other threads idle.
+     * Like the sequential path, the parse stops at the first file that fails; The files not parsed yet are dropped
+     * rather than waited for.
+     *
+     * @param projectFiles The array of files to be read.
+     * @return The result of each file, at the same index as the file in the passed array.
+     * @throws IOException The first exception thrown while parsing a file.
+     */
+    private ParseResult[] parseInParallel(File[] projectFiles) throws IOException {
+        ParseResult[] results = new ParseResult[projectFiles.length];
+        Integer[] order = new Integer[projectFiles.length];
+        long[] sizes = new long[projectFiles.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            sizes[i] = projectFiles[i].length();
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sizes[b], sizes[a]));
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        // Handed the pool as a plain executor, so that a task's exception reaches get as it was thrown
+        ExecutorCompletionService<Void> finished = new ExecutorCompletionService<>(pool::execute);
+        ArrayList<Future<Void>> tasks = new ArrayList<>(projectFiles.length);
+        try {
+            // Each task only writes to its own slot of the results, so they can be filled in concurrently
+            for (int index : order)
+                tasks.add(finished.submit(() -> {
+                    results[index] = parseFile(projectFiles[index]);
+                    return null;
+                }));
+            // Tasks are waited for in the order they finish, so a failure is seen as soon as it happens
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    finished.take().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Parsing was interrupted.");
+                }
             }
+        } finally {
+            // Does nothing to the tasks that have finished
+            for (Future<Void> task : tasks)
+                task.cancel(true);
+            pool.shutdownNow();
         }
+        return results;
+    }
 
+    /**
+     * Parses a single source file; .cpp files are read for their dependencies and .h files for their methods.
+     * Only reads the settings of the FileParser, so any number of files can be parsed at the same time.
+     * A file that has not changed since it was cached is not read again.
+     *
+     * @param cFile The file to be read.
+     * @return The information read from the file.
+     * @throws IOException Thrown if the file is not a .cpp or .h file, or if it could not be read.
+     */
+    ParseResult parseFile(File cFile) throws IOException {
+        if (parseCache == null)
+            return readFile(cFile);
+        /* The file's size, time and hash are all taken before it is read;
+           A file edited while it is read is then cached as it was before the edit, and read again next time.
+         */
+        ParseCache.Stamp stamp = new ParseCache.Stamp(cFile);
+        int options = parseOptions(cFile);
+        ParseResult result = parseCache.get(stamp, options);
+        if (result == null) {
+            stamp.hash();
+            result = readFile(cFile);
+            parseCache.put(stamp, options, result);
+        }
+        return result;
+    }
+
+    /*
+    @returns the settings of this parser that what is read from the file depends on, as cached with its result
+     */
+    private int parseOptions(File cFile) {
+        return cFile.getName().endsWith(".cpp") && scanWholeFileForIncludes ? 1 : 0;
+    }
+
+    /*
+    Reads a single source file, ignoring the cache.
+    @param cFile the file to be read
+    @returns the information read from the file
+     */
+    private ParseResult readFile(File cFile) throws IOException {
+        if (cFile.getName().endsWith(".cpp"))
+            return new ParseResult(null, makeDependence(cFile, scanWholeFileForIncludes));
+        else if (cFile.getName().endsWith(".h"))
+            return new ParseResult(makeMethods(cFile), null);
+        else {
+            LOGGER.warning("An unexpected file has been passed.");
+            throw new IOException("An unexpected file has been passed.");
+        }
     }
 
     /**
      * Generates the necessary output files (makefile, unit tests, test fixtures) to the destination selected by the
-     * user
+     * user; The test fixture and unit tests are written side by side, on the test fixture's number of write threads.
      * @param destination
+     * @throws IOException naming every output file that could not be written
      */
-    public void generateOutputFiles(File destination) {
-        try {
-            Main.LOGGER.info("MakeFile: " + MakeFileWriter.writeMakefile(dependencies, fixture, destination).getName() + " has been generated.");
-            UnitTestWriter.setDestination(destination);
-            UnitTestWriter.writeUnitTests(methods, fixture);
-        } catch (IOException e) {
-            e.printStackTrace();
-            Main.LOGGER.severe("An error in generation has occurred\n" + e.toString());
+    public void generateOutputFiles(File destination) throws IOException {
+        UnitTestWriter testWriter = new UnitTestWriter(destination, csvCache);
+        try (ParallelWriter writer = new ParallelWriter(fixture.getWriteThreads())) {
+            writer.submit(fixture.getFixtureName() + ".h", () -> fixture.writeHeaderFile(destination));
+            if (fixture.getPrecompiledHeader())
+                writer.submit(UnitTestWriter.precompiledHeader, () -> testWriter.writePrecompiledHeader(dependencies));
+            ArrayList<TestUnit> testUnits = testWriter.writeUnitTests(methods, fixture, writer);
+            LOGGER.info("Build file: " + writeBuildFile(dependencies, testUnits, fixture, destination).getName() +
+                    " has been generated.");
+        } finally {
+            saveCsvCache();
         }
 
         consoleTestBecauseWeDontKnowHowToUseJUnitRightNow(methods, dependencies);
     }
 
     /**
-     * Reads a c++ file and creates a list of all the project files and c++ libraries the class depends on.
+     * Writes the build file of the test fixture's build system to the destination;
+     * The object cache wrapper is written along with it if the fixture compiles through one.
+     *
+     * @param dependencies  The dependencies of the parsed .cpp files.
+     * @param testUnits     The unit test executables to be built.
+     * @param fixture       The test fixture describing the build.
+     * @param destination   The folder the build file is written to.
+     * @return The written build file.
+     * @throws IOException If the build file could not be written.
+     */
+    static File writeBuildFile(HashSet<Dependence> dependencies, Collection<TestUnit> testUnits,
+                               TestFixture fixture, File destination) throws IOException {
+        if (fixture.getObjectCache())
+            ObjectCacheWriter.writeWrapper(fixture, destination);
+        if (fixture.getBuildSystem() == TestFixture.BuildSystem.NINJA)
+            return NinjaFileWriter.writeNinjaFile(dependencies, testUnits, fixture, destination);
+        return MakeFileWriter.writeMakefile(dependencies, testUnits, fixture, destination);
+    }
+
+    /**
+     * Reads a c++ file and creates a list of all the project files and c++ libraries the class depends on;
+     * The file is memory mapped and its bytes are scanned for #include directives without decoding its lines.
      *
-     * @param cppFile The c++ file to be read
+     * @param cppFile   The c++ file to be read
+     * @param wholeFile Whether to read the whole file rather than stopping once its includes are clearly over
      * @return The list of project files and c++ libraries that this class files depends on
      * @throws IOException If and I/O exception occurred when attempting to read the file
      */
-    private static Dependence makeDependence(File cppFile) throws IOException {
+    private static Dependence makeDependence(File cppFile, boolean wholeFile) throws IOException {
         // Gets the string of the file name without its file type signifier
         String className = cppFile.getName().substring(0, cppFile.getName().indexOf('.'));
         HashSet<String> dependencies = new HashSet<>();
         HashSet<String> libraries = new HashSet<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(cppFile))) {
-            String line = br.readLine();
-            if(line == null) {
-                Main.LOGGER.warning("Blank file read.");
+        try (FileChannel channel = FileChannel.open(cppFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size == 0) {
+                LOGGER.warning("Blank file read.");
                 return null;
             }
-            if(line.equals(UnitTestWriter.getUnitTestHeader())){
-                Main.LOGGER.info("Unit test identified, Skipping. We don't go deep.");
+            // A single mapping can only cover 2GB, which is far more than the includes of any file need
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if(firstLineEquals(bytes, UnitTestWriter.getUnitTestHeader())){
+                LOGGER.info("Unit test identified, Skipping. We don't go deep.");
                 return null;
             }
-            // Reads the whole file
-            while (line != null) {
-                // Cuts any line comments out of the considered line
-                if (line.contains("//"))
-                    line = line.substring(0, line.indexOf("//"));
-                line = line.trim();
-                /* Looks to see if the signifier "#include" heads the line;
-                   If so, it reads the line;
-                   If not, it ignores the line.
-                 */
-                if (line.startsWith("#include")) {
-                    // Gets just the class name after the signifier "#includes"
-                    String shortLine = line.substring(8).trim();
-                    // Libraries should be enclosed in <> while project classes should be enclosed in ""
-                    switch (shortLine.charAt(0)) {
-                        case '<':
-                            // Strips .h if it exists in the include deceleration
-                            libraries.add(shortLine.substring(1, shortLine.indexOf('.') == -1 ?
-                                    shortLine.indexOf('>') : shortLine.indexOf('.')));
-                            break;
-                        case '"':
-                            // Strips .h if it exists in the include deceleration
-                            dependencies.add(shortLine.substring(1, shortLine.indexOf('.') == -1 ?
-                                    shortLine.lastIndexOf('"') : shortLine.indexOf('.')));
-                            break;
-                        default:
-                            /* C++ #include signifier is very syntactically strict;
-                               We can expect any compilable code to never cause this exception to be thrown.
-                             */
-                            throw new RuntimeException("The #include line does not appear to be formatted properly.");
-                    }
-                }
-                // Reads the next line
-                line = br.readLine();
-            }
-        } catch (FileNotFoundException e) {
-            Main.LOGGER.severe("Somehow, a file that made its way into the FileParser was not found." +
+            new IncludeScanner(bytes, wholeFile).scan(libraries, dependencies);
+        } catch (NoSuchFileException e) {
+            LOGGER.severe("Somehow, a file that made its way into the FileParser was not found." +
                     "These files should have ultimately come from a browse functionality." +
                     "This should not be possible.");
             throw e;
         } catch (IOException e) {
-            Main.LOGGER.warning("An IOException was caught processing: " + cppFile.getName() +
-                    ". This occurred while parsing for methods.");
+            LOGGER.warning("An IOException was caught processing: " + cppFile.getName() +
+                    ". This occurred while parsing for dependencies.");
             throw e;
         }
 
@@ -179,6 +398,23 @@ public class FileParser {
         return new Dependence(className, depArray, libArray);
     }
 
+    /**
+     * Checks whether the first line of a file's bytes is exactly the given header.
+     *
+     * @param bytes  The contents of the file.
+     * @param header The header, which is expected to be plain ASCII.
+     * @return true if the file starts with the header followed by a line break or the end of the file.
+     */
+    private static boolean firstLineEquals(ByteBuffer bytes, String header) {
+        if (bytes.limit() < header.length())
+            return false;
+        for (int i = 0; i < header.length(); i++)
+            if (bytes.get(i) != header.charAt(i))
+                return false;
+        return bytes.limit() == header.length() || bytes.get(header.length()) == '\n' ||
+                bytes.get(header.length()) == '\r';
+    }
+
     /**
      * Reads a C++ file and finds each method declared in the file, turning them into a Method object;
      * The methods must be specifically declared, with no body, for this method to be able to read them;
@@ -190,99 +426,31 @@ public class FileParser {
      * @return a list of the passed file's methods
      */
     private static Method[] makeMethods(File hFile) throws IOException {
-        /* This regex represents methodReturnType methodName(paramType1 param1, paramType2 param2,...);
-           The important thing is the parenthesis and the white spaces;
-           Even though this regex could allow methods with improperly formatted parts,
-           ie Stri[]ng or a method name with illegal characters,
-           these uncompilable parts are not expected in the passes files.
-         */
-        String regex = "\\S+\\s+\\S+\\s*\\(\\s*(\\S+\\s+\\S+\\s*,?\\s*)*\\).*";
-        ArrayList<Method> methods = new ArrayList<>();
         // Grabs the class name by taking every part before the file's type
         String className = hFile.getName().substring(0, hFile.getName().indexOf('.'));
-        String currentReturnType, currentMethodName;
-        String[] currentParamTypes;
+        ArrayList<Method> methods;
 
         try (BufferedReader br = new BufferedReader(new FileReader(hFile))) {
-            String line = br.readLine();
+            String line = peekFirstLine(br, TestFixture.getTestFixtureHeader().length());
             if(line == null) {
-                Main.LOGGER.warning("Blank file read.");
+                LOGGER.warning("Blank file read.");
                 return null;
             }
             if(line.equals(TestFixture.getTestFixtureHeader())) {
-                Main.LOGGER.info("Test fixture detected, Skipping. We don't go deep.");
+                LOGGER.info("Test fixture detected, Skipping. We don't go deep.");
                 return null;
             }
-            String restOfLine = "";
-            // Reads the whole file
-            while (line != null) {
-                // Cuts any line comments out of the considered line
-                if (line.contains("//"))
-                    line = line.substring(0, line.indexOf("//"));
-
-                /* Extends the considered string to include the next line if an open parenthesis was not closed;
-                   It is possible that, do to page space constraints,
-                   the parameters were declared across different lines;
-                   This part accounts for that possibility.
-                 */
-                while (line.contains("(") && !line.contains(")")) {
-                    line += " " + br.readLine().trim();
-                    if (line.contains("//"))
-                        line = line.substring(0, line.indexOf("//"));
-                }
-                line = line.trim();
-                /* Checks if the considered string mates the regex defined above;
-                   If so, begins to break apart and store the information of the line;
-                   If not, the line is ignored.
-                 */
-                if (line.matches(regex)) {
-                    /* Gets the first piece of information separated by a space or tab;
-                       This piece of information is the method's return type.
-                     */
-                    currentReturnType = line.substring(0, line.indexOf(' ') == -1 ?
-                            line.indexOf('\t') : line.indexOf(' ')).trim();
-                    // Trims down the considered string to removed the information recently stored
-                    line = line.substring(line.indexOf(' ') == -1 ? line.indexOf('\t') : line.indexOf(' ')).trim();
-                    /* Gets the next piece of information just before the open parenthesis, ignoring whitespaces;
-                       This piece of information is the method's name.
-                     */
-                    currentMethodName = line.substring(0, line.indexOf('(')).trim();
-                    /* Trims down the considered string to removed the information recently stored;
-                       Also removes anything past the close parenthesis;
-                       What we should have now is the list of method parameters.
-                     */
-                    restOfLine = line.substring(line.indexOf(')') + 1);
-                    line = line.substring(line.indexOf('(') + 1, line.indexOf(')')).trim();
-                    // Splits the method parameters around any commas and puts the pieces into an array
-                    currentParamTypes = line.split(",");
-                    for (int i = 0; i < currentParamTypes.length; i++) {
-                        currentParamTypes[i] = currentParamTypes[i].trim();
-                        /* Accounts for the possibility that there are no parameters;
-                           If there are parameters,
-                           represented by currentParamTypes[0] not containing the empty string,
-                           the parameter type is separated from the parameter name by reading for a white space;
-                           The parameter name is discarded.
-                         */
-                        if (!currentParamTypes[i].isEmpty())
-                            currentParamTypes[i] = currentParamTypes[i].substring(0,
-                                    currentParamTypes[i].indexOf(' ') == -1 ?
-                                            currentParamTypes[i].indexOf('\t') :
-                                            currentParamTypes[i].indexOf(' ')).trim();
-                    }
-                    methods.add(new Method(className, currentReturnType, currentMethodName, currentParamTypes));
-                    if(!restOfLine.contains(";"))
-                        curlyBurn(br, restOfLine);
-                    restOfLine = "";
-                }
-                line = br.readLine();
-            }
+            /* Reads the whole file in a single pass;
+               The scanner joins declarations split across lines and skips the bodies of methods defined in the file.
+             */
+            methods = new DeclarationScanner(className).scan(br);
         } catch (FileNotFoundException e) {
-            Main.LOGGER.severe("Somehow, a file that made its way into the FileParser was not found." +
+            LOGGER.severe("Somehow, a file that made its way into the FileParser was not found." +
                     "These files should have ultimately come from a browse functionality." +
                     "This should not be possible.");
             throw e;
         } catch (IOException e) {
-            Main.LOGGER.warning("An IOException was caught processing: " + hFile.getName() +
+            LOGGER.warning("An IOException was caught processing: " + hFile.getName() +
                     ". This occurred while parsing for methods.");
             throw e;
         }
@@ -291,23 +459,26 @@ public class FileParser {
         return methodsArray;
     }
 
-    private static void curlyBurn(BufferedReader br, String restOfLine) throws IOException {
-        int brace = 0;
-        while(restOfLine != null) {
-            if (restOfLine.contains("{")) {
-                brace++;
-                restOfLine = restOfLine.substring(restOfLine.indexOf('{') + 1);
-            }
-            if (restOfLine.contains("}")) {
-                brace--;
-                if(brace == 0)
-                    return;
-                restOfLine = restOfLine.substring(restOfLine.indexOf('}') + 1);
-            }
-            restOfLine = br.readLine();
+    /**
+     * Looks at the start of the first line of a file without consuming it, so the reader can still read the whole file.
+     *
+     * @param br    The reader of the file, positioned at its start.
+     * @param limit The most characters of the line that are of interest.
+     * @return At most limit + 1 characters of the first line, or null if the file is empty.
+     * @throws IOException If an I/O exception occurred when attempting to read the file
+     */
+    private static String peekFirstLine(BufferedReader br, int limit) throws IOException {
+        StringBuilder start = new StringBuilder();
+        br.mark(limit + 2);
+        int c = br.read();
+        if (c == -1)
+            return null;
+        while (c != -1 && c != '\n' && c != '\r' && start.length() <= limit) {
+            start.append((char) c);
+            c = br.read();
         }
-        if(brace != 0)
-            throw new IllegalArgumentException("This file does not close a curly brace.");
+        br.reset();
+        return start.toString();
     }
 
     /**
@@ -325,22 +496,30 @@ public class FileParser {
         System.out.println();
     }
 
+    /*
+    Reads every row of a CSV file; Commas and line breaks inside string and character literals do not split fields.
+    Unit tests stream their CSV files row by row through a CsvReader instead, so this is only for files small enough to
+    be held whole.
+    @param csv the CSV file to read
+    @returns the fields of each row, or the rows read before an error
+     */
     public static String[][] parseCSVFile(File csv) {
-        String[][] params;
-        ArrayList<String[]> tempParams = new ArrayList<String[]>();
-        try (BufferedReader br = new BufferedReader(new FileReader(csv))) {
-            int numLines = 0;
-            for(String currentLine = br.readLine(); currentLine != null; currentLine = br.readLine()){
-                String[] currentParams = currentLine.split(",");
-                tempParams.add(new String[currentParams.length]);
-                for(int i = 0; i<currentParams.length; i++){
-                    tempParams.get(numLines)[i] = currentParams[i];
-                }
-                numLines++;
-            }
+        return parseCSVFile(csv, 1);
+    }
 
+    /*
+    Reads every row of a CSV file, tokenizing a large file on several threads; The rows are in the order of the file.
+    @param csv the CSV file to read
+    @param parallelism the number of threads a large file may be tokenized with
+    @returns the fields of each row, or the rows read before an error
+     */
+    public static String[][] parseCSVFile(File csv, int parallelism) {
+        ArrayList<String[]> tempParams = new ArrayList<String[]>();
+        try (CsvReader rows = CsvReader.open(csv, parallelism)) {
+            for(String[] currentParams = rows.readRow(); currentParams != null; currentParams = rows.readRow())
+                tempParams.add(currentParams);
         } catch (java.io.IOException e) {
-            Main.LOGGER.severe("Error when reading CSV file.");
+            LOGGER.severe("Error when reading CSV file.");
         }
 
         return tempParams.toArray(new String[tempParams.size()][]);
@@ -354,4 +533,18 @@ public class FileParser {
     public void updateTestFixture(TestFixture fixture){
         this.fixture = fixture;
     }
-}
\ No newline at end of file
+
+    /**
+     * The information read from one source file;
+     * A .cpp file only has a dependence and a .h file only has methods, either of which is null if the file was skipped.
+     */
+    static class ParseResult {
+        final Method[] methods;
+        final Dependence dependence;
+
+        ParseResult(Method[] methods, Dependence dependence) {
+            this.methods = methods;
+            this.dependence = dependence;
+        }
+    }
+}
@@ -1392,7 +1392,12 @@ public class FrontEndGUI {
                         integerDefault.getText(), doubleDefault.getText(), booleanDefault.getText());
                 controller.updateCFlags(cFlagCheckList);
                 controller.printTextFixturePreferences(); //Test Method
-                controller.getFileParser().generateOutputFiles(controller.getDestinationFile());
+                try {
+                    controller.getFileParser().generateOutputFiles(controller.getDestinationFile());
+                } catch (IOException e) {
+                    Main.LOGGER.severe("An error in generation has occurred\n" + e.toString());
+                    AlertBox.simpleDisplay(e.getMessage());
+                }
                 fixtureStage.close();
             }
             else {
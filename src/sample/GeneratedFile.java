@@ -0,0 +1,111 @@
+package sample;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Library class that writes generated files only when their contents change, so that regenerating a project keeps the
+ * last modified time of every file that came out the same and make does not rebuild what depends on it.
+ * A file's new contents are compared with the file on disk by size and then by hash; A changed file is written to a
+ * temporary file next to it and renamed over it, so a reader never sees it half written.
+ *
+ * @author Axolotl Development Team
+ */
+public class GeneratedFile {
+
+    /**
+     * Writes text to a file unless the file already holds it; The text is encoded the way a FileWriter would.
+     *
+     * @param file     The file to write.
+     * @param contents The text the file should hold.
+     * @return true if the file was written, false if it was already up to date.
+     * @throws IOException If the file could not be read or written.
+     */
+    public static boolean write(File file, String contents) throws IOException {
+        return write(file, contents.getBytes(Charset.defaultCharset()));
+    }
+
+    /**
+     * Writes bytes to a file unless the file already holds them.
+     *
+     * @param file     The file to write.
+     * @param contents The bytes the file should hold.
+     * @return true if the file was written, false if it was already up to date.
+     * @throws IOException If the file could not be read or written.
+     */
+    public static boolean write(File file, byte[] contents) throws IOException {
+        if (file.isFile() && file.length() == contents.length &&
+                Arrays.equals(ContentHash.of(contents), ContentHash.of(file)))
+            return false;
+        File temp = temporaryFor(file);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(contents);
+            }
+            moveOver(temp, file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        return true;
+    }
+
+    /**
+     * Replaces a file with a temporary file written in full beforehand, unless the two hold the same bytes, in which case
+     * the temporary file is just deleted; For outputs too large to be built in memory first.
+     *
+     * @param temp The temporary file, from temporaryFor.
+     * @param file The file to replace.
+     * @return true if the file was replaced, false if it was already up to date.
+     * @throws IOException If either file could not be read, or the file could not be replaced.
+     */
+    public static boolean replace(File temp, File file) throws IOException {
+        try {
+            if (file.isFile() && file.length() == temp.length() &&
+                    Arrays.equals(ContentHash.of(temp), ContentHash.of(file)))
+                return false;
+            moveOver(temp, file);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Creates a temporary file in the same folder as a file, so it can be renamed over the file in one step.
+     *
+     * @param file The file the temporary file is to replace.
+     * @return The new, empty temporary file.
+     * @throws IOException If the temporary file could not be created.
+     */
+    public static File temporaryFor(File file) throws IOException {
+        File folder = file.getAbsoluteFile().getParentFile();
+        // Not File.createTempFile, which would leave the generated file readable by its owner only
+        for (int attempt = 0; ; attempt++) {
+            File temp = new File(folder, "." + file.getName() + "." + Thread.currentThread().getId() + "." +
+                    Long.toHexString(System.nanoTime() + attempt) + ".tmp");
+            try {
+                Files.createFile(temp.toPath());
+                return temp;
+            } catch (FileAlreadyExistsException e) {
+                // Another thread picked the same name; try the next
+            }
+        }
+    }
+
+    /*
+    Renames a file over another in one step where the file system allows it.
+     */
+    private static void moveOver(File temp, File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
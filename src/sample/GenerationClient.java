@@ -0,0 +1,124 @@
+package sample;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+
+/**
+ * Thin command line client of a GenerationDaemon; Takes the same arguments as HeadlessMain, sends them to the daemon to
+ * be run there, and prints the progress and timings the daemon streams back as they come.
+ * Starts in a fraction of the time a HeadlessMain run takes, since nothing but a socket is set up.
+ * Every request starts with the token the daemon wrote to its token file, which only the daemon's user can read.
+ *
+ * @author Axolotl Development Team
+ */
+public class GenerationClient {
+
+    private static final String USAGE =
+            "Usage: GenerationClient [--daemon-port <n>] [--token-file <file>] <HeadlessMain arguments>...\n" +
+            "       GenerationClient [--daemon-port <n>] [--token-file <file>] --stop-daemon\n" +
+            "  --daemon-port <n>           Port the daemon listens on (default: " + GenerationDaemon.DEFAULT_PORT + ")\n" +
+            "  --token-file <file>         File the daemon wrote its token to (default: the daemon's for the port)\n" +
+            "  --stop-daemon               Stop the daemon once the requests it is running finish";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Sends a request to the daemon and prints its answer.
+     *
+     * @param args The command line arguments.
+     * @param out  Where progress and timings are printed.
+     * @param err  Where errors are printed.
+     * @return The exit status; that of the generation, or 1 if the daemon could not be reached.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        int port = GenerationDaemon.DEFAULT_PORT;
+        boolean stop = false;
+        File tokenFile = null;
+        ArrayList<String> forwarded = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--daemon-port") && i + 1 < args.length) {
+                try {
+                    port = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    err.println("--daemon-port expects a whole number.");
+                    err.println(USAGE);
+                    return 2;
+                }
+            } else if (args[i].equals("--token-file") && i + 1 < args.length)
+                tokenFile = new File(args[++i]);
+            else if (args[i].equals("--stop-daemon"))
+                stop = true;
+            else
+                forwarded.add(args[i]);
+        }
+
+        if (tokenFile == null)
+            tokenFile = GenerationDaemon.tokenFile(port);
+        String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            err.println("No daemon token found in " + tokenFile + "; Is a generation daemon running on port " + port +
+                    "?");
+            return 1;
+        } catch (IOException e) {
+            err.println("The daemon token could not be read: " + e);
+            return 1;
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             PrintWriter request = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            request.print("token " + token + "\n");
+            if (stop)
+                request.print("stop\n");
+            else {
+                request.print("generate\ncwd " + new File("").getAbsolutePath() + "\n");
+                for (String arg : forwarded)
+                    request.print("arg " + arg + "\n");
+                request.print("end\n");
+            }
+            request.flush();
+
+            boolean timings = false;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.startsWith("progress "))
+                    out.println(line.substring(9));
+                else if (line.startsWith("timing ")) {
+                    if (!timings)
+                        out.println("Phase timings:");
+                    timings = true;
+                    String[] timing = line.substring(7).split(" ");
+                    out.printf("  %-16s %8s ms%n", timing[0].replace('_', ' '), timing[1]);
+                } else if (line.startsWith("error "))
+                    err.println(line.substring(6));
+                else if (line.startsWith("exit "))
+                    return Integer.parseInt(line.substring(5));
+            }
+            err.println("The daemon closed the connection before answering.");
+            return 1;
+        } catch (ConnectException e) {
+            err.println("No generation daemon is listening on port " + port + ".");
+            return 1;
+        } catch (IOException | NumberFormatException e) {
+            err.println("Request failed: " + e);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package sample;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Long lived generation server, keeping the parser and writers loaded, warmed up by the JIT and holding their parse and
+ * CSV caches in memory between generations, so that editors and build scripts can regenerate a project through a
+ * GenerationClient without starting a JVM each time.
+ * Listens on a loopback socket only, and runs each request as a GenerationJob of its own, several at once.
+ * Any local user can reach a loopback port, so on starting the daemon writes a random token to a file only its own user
+ * can read, and a request is only answered if it starts with that token; The file is deleted when the daemon stops.
+ * The protocol is made of UTF-8 lines. A request starts with "token <token>", then is either "stop", or "generate"
+ * followed by "cwd <folder>", a line "arg <argument>" for each argument HeadlessMain takes, and "end"; Relative paths
+ * in the arguments are resolved against the folder. The daemon answers with "progress <message>" lines as the job runs,
+ * a "timing <phase> <ms>" line for each phase, any number of "error <message>" lines, and finally "exit <status>" with
+ * the status HeadlessMain would have exited with.
+ *
+ * @author Axolotl Development Team
+ */
+public class GenerationDaemon {
+
+    //The program's logger
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    //Default port the daemon listens on
+    public static final int DEFAULT_PORT = 7426;
+    //How long a client may take to send its request
+    private static final int REQUEST_TIMEOUT_MILLIS = 10000;
+
+    private static final String USAGE =
+            "Usage: GenerationDaemon [options]\n" +
+            "  -p, --port <n>              Loopback port to listen on (default: " + DEFAULT_PORT + ")\n" +
+            "  --jobs <n>                  Requests run at the same time (default: one per core)\n" +
+            "  --token-file <file>         File the request token is written to (default: " +
+            tokenFile(DEFAULT_PORT) + ")\n" +
+            "  -h, --help                  Show this message";
+
+    /*
+     * server - The socket requests are accepted on.
+     * jobs - The threads requests are run on.
+     * parseCaches, csvCaches - The caches loaded by earlier requests, mapped by their absolute file or folder.
+     * token - The token every request must start with; tokenFile is where it was written.
+     */
+    private final ServerSocket server;
+    private final ExecutorService jobs;
+    private final Map<File, ParseCache> parseCaches;
+    private final Map<File, CsvCache> csvCaches;
+    private final String token;
+    private final File tokenFile;
+
+    /**
+     * Opens the daemon's socket and writes the token requests must start with; Requests are only accepted once serve is
+     * called.
+     *
+     * @param port        The loopback port to listen on, or 0 for any free port.
+     * @param concurrency The number of requests run at the same time.
+     * @param tokenFile   The file to write the token to, or null for the default file of the port listened on.
+     * @throws IOException If the port could not be listened on or the token could not be written.
+     */
+    public GenerationDaemon(int port, int concurrency, File tokenFile) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        // Written once the port is taken, so a second daemon started on it does not replace the first one's token
+        this.tokenFile = tokenFile != null ? tokenFile : tokenFile(server.getLocalPort());
+        try {
+            token = newToken();
+            writeToken(this.tokenFile, token);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        jobs = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        parseCaches = new ConcurrentHashMap<>();
+        csvCaches = new ConcurrentHashMap<>();
+    }
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT, concurrency = Runtime.getRuntime().availableProcessors();
+        File tokenFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    System.out.println(USAGE);
+                    return;
+                } else if ((arg.equals("-p") || arg.equals("--port")) && i + 1 < args.length)
+                    port = Integer.parseInt(args[++i]);
+                else if (arg.equals("--jobs") && i + 1 < args.length)
+                    concurrency = Integer.parseInt(args[++i]);
+                else if (arg.equals("--token-file") && i + 1 < args.length)
+                    tokenFile = new File(args[++i]);
+                else
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            GenerationDaemon daemon = new GenerationDaemon(port, concurrency, tokenFile);
+            System.out.println("Generation daemon listening on " + daemon.getPort());
+            daemon.serve();
+        } catch (IOException e) {
+            System.err.println("Daemon failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return The port the daemon listens on.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @param port The port a daemon listens on.
+     * @return The file a daemon listening on the port writes its token to by default, in the user's home folder.
+     */
+    public static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".cpputg-daemon-" + port + ".token");
+    }
+
+    /**
+     * Accepts requests until a stop request is received or the daemon is closed, then waits for the requests already
+     * running to finish; The token file is deleted once they have.
+     *
+     * @throws IOException If the socket failed.
+     */
+    public void serve() throws IOException {
+        try {
+            while (!server.isClosed()) {
+                Socket client;
+                try {
+                    client = server.accept();
+                } catch (SocketException e) {
+                    // Closed by a stop request
+                    break;
+                }
+                jobs.execute(() -> handle(client));
+            }
+        } finally {
+            jobs.shutdown();
+            try {
+                jobs.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Files.deleteIfExists(tokenFile.toPath());
+        }
+    }
+
+    /**
+     * Stops accepting requests; Requests already running are finished.
+     *
+     * @throws IOException If the socket could not be closed.
+     */
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /*
+    Reads a request from a client and answers it.
+     */
+    private void handle(Socket client) {
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+            String given = in.readLine();
+            // Compared in constant time, so the token can not be guessed a character at a time
+            if (given == null || !given.startsWith("token ") || !MessageDigest.isEqual(
+                    given.substring(6).getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+                LOGGER.warning("Request without the daemon's token refused.");
+                send(out, "error Request refused: it does not start with the token in " + tokenFile);
+                send(out, "exit 2");
+                return;
+            }
+            String command = in.readLine();
+            if ("stop".equals(command)) {
+                send(out, "exit 0");
+                close();
+                return;
+            }
+            if (!"generate".equals(command)) {
+                send(out, "error Unknown request " + command);
+                send(out, "exit 2");
+                return;
+            }
+            File workingDirectory = null;
+            ArrayList<String> args = new ArrayList<>();
+            for (String line = in.readLine(); !"end".equals(line); line = in.readLine()) {
+                if (line == null)
+                    throw new IOException("Request ended before its end line.");
+                if (line.startsWith("cwd "))
+                    workingDirectory = new File(line.substring(4));
+                else if (line.startsWith("arg "))
+                    args.add(line.substring(4));
+                else
+                    throw new IOException("Unexpected request line " + line);
+            }
+            // The job may run for longer than a request may take to send
+            socket.setSoTimeout(0);
+            send(out, "exit " + generate(workingDirectory, args.toArray(new String[args.size()]), out));
+        } catch (IOException e) {
+            LOGGER.warning("Generation request failed.\n" + e.toString());
+        }
+    }
+
+    /*
+    Runs a generation request as a job of its own, streaming its progress to the client.
+    @returns the status HeadlessMain would have exited with
+     */
+    private int generate(File workingDirectory, String[] args, PrintWriter out) {
+        HeadlessMain generation = new HeadlessMain(workingDirectory);
+        try {
+            if (!generation.parseArguments(args)) {
+                for (String line : HeadlessMain.USAGE.split("\n"))
+                    send(out, "progress " + line);
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            send(out, "error " + e.getMessage());
+            for (String line : HeadlessMain.USAGE.split("\n"))
+                send(out, "error " + line);
+            return 2;
+        }
+        try {
+            GenerationJob job = generation.createJob(parseCaches, csvCaches);
+            job.setProgress(message -> send(out, "progress " + message));
+            Map<String, Long> timings = job.run(generation.getSourceFiles());
+            timings.forEach((phase, millis) -> send(out, "timing " + phase.replace(' ', '_') + " " + millis));
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            for (String line : ("Generation failed: " + e).split("\n"))
+                send(out, "error " + line);
+            return 1;
+        }
+    }
+
+    /*
+    @returns a new random token, as 64 hexadecimal digits
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return ContentHash.hex(bytes);
+    }
+
+    /*
+    Writes the token to a file only the daemon's user can read and write; It is created with those permissions under a
+    temporary name, so it is never readable by others, and then renamed over any token left by an earlier daemon.
+     */
+    private static void writeToken(File tokenFile, String token) throws IOException {
+        File folder = tokenFile.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs())
+            throw new IOException("Folder " + folder + " for the daemon's token could not be made.");
+        Path temp = new File(folder, "." + tokenFile.getName() + "." + Long.toHexString(System.nanoTime()) + ".tmp")
+                .toPath();
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        else {
+            Files.createFile(temp);
+            File file = temp.toFile();
+            boolean owner = file.setReadable(false, false) & file.setReadable(true, true) &
+                    file.setWritable(false, false) & file.setWritable(true, true);
+            if (!owner)
+                LOGGER.warning("The daemon's token file " + tokenFile + " could not be made private to its user.");
+        }
+        try {
+            Files.write(temp, (token + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, tokenFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /*
+    Sends one line to a client; Lines from the threads writing a job's tests are sent whole, one at a time.
+     */
+    private static void send(PrintWriter out, String line) {
+        synchronized (out) {
+            out.print(line + "\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * One generation of a project's unit tests, build file and test fixture, carrying everything the generation changes as
+ * it runs: its destination, its test fixture, a parser of its own and a unit test writer of its own.
+ * Jobs share nothing but the parse and CSV caches they may be given, which are safe to share, so any number of jobs for
+ * different projects can run at the same time in the same JVM without writing into each other's destination.
+ * A job is not meant to be run on two threads at once.
+ *
+ * @author Axolotl Development Team
+ */
+public class GenerationJob {
+
+    /*
+     * destination - The folder the output is written to.
+     * fixture - The test fixture the output is generated with.
+     * parser - Parses the sources; its settings and caches are those the job was given.
+     * testWriter - Writes the unit tests to the destination.
+     * queueDepth - The number of parsed classes that may wait for the test writer.
+     * progress - Told what the job is doing as it runs.
+     * parsePool - Threads shared with other jobs that the sources are parsed on, or null for threads of the job's own.
+     * saveCaches - Whether the parse and CSV caches are saved once the job has run.
+     * testUnits - The unit test executables to be built from the last run.
+     */
+    private final File destination;
+    private final TestFixture fixture;
+    private final FileParser parser;
+    private final UnitTestWriter testWriter;
+    private int queueDepth;
+    private Consumer<String> progress;
+    private ExecutorService parsePool;
+    private boolean saveCaches;
+    private ArrayList<TestUnit> testUnits;
+
+    /**
+     * Creates a new job.
+     *
+     * @param destination The folder the output is written to.
+     * @param fixture     The test fixture the output is generated with; It should not be shared with another job.
+     * @param parser      A parser with the settings and caches to parse with; It becomes the job's own, and is set to
+     *                    parse with the job's test fixture.
+     */
+    public GenerationJob(File destination, TestFixture fixture, FileParser parser) {
+        this.destination = destination;
+        this.fixture = fixture;
+        this.parser = parser;
+        parser.updateTestFixture(fixture);
+        testWriter = new UnitTestWriter(destination, parser.getCsvCache());
+        queueDepth = GenerationPipeline.DEFAULT_QUEUE_CAPACITY;
+        progress = message -> { };
+        saveCaches = true;
+        testUnits = new ArrayList<>();
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    public TestFixture getFixture() {
+        return fixture;
+    }
+
+    public FileParser getParser() {
+        return parser;
+    }
+
+    /**
+     * @return The unit test executables to be built from the tests written by the last run.
+     */
+    public ArrayList<TestUnit> getTestUnits() {
+        return testUnits;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Setter method for the 'queueDepth' attribute.
+     *
+     * @param queueDepth The number of parsed classes that may wait for the test writer; values below 1 are treated as 1.
+     */
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = Math.max(1, queueDepth);
+    }
+
+    /**
+     * Setter method for the 'progress' attribute.
+     *
+     * @param progress Told what the job is doing as it runs, one line at a time; It is called from the threads writing
+     *                 the unit tests too, so it must be safe to call from several threads at once.
+     */
+    public void setProgress(Consumer<String> progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Setter method for the 'parsePool' attribute.
+     *
+     * @param parsePool Threads shared with other jobs to parse the sources on, or null to parse on the parser's own
+     *                  number of threads; The job never shuts it down.
+     */
+    public void setParsePool(ExecutorService parsePool) {
+        this.parsePool = parsePool;
+    }
+
+    /**
+     * Setter method for the 'saveCaches' attribute; Jobs sharing caches and run one after another can leave saving
+     * them to the last.
+     *
+     * @param saveCaches Whether the parse and CSV caches are saved once the job has run, which they are by default.
+     */
+    public void setSaveCaches(boolean saveCaches) {
+        this.saveCaches = saveCaches;
+    }
+
+    /**
+     * Parses the sources and writes the build file, unit tests and test fixture to the destination;
+     * Unit tests are written by a pipeline while the rest of the sources are still being parsed, and every file is
+     * written on a ParallelWriter shared by all of them, the test fixture while the first sources are parsed.
+     *
+     * @param sources The .cpp and .h files to be parsed.
+     * @return How long each phase took in milliseconds, in the order the phases ran.
+     * @throws IOException If a source file could not be read, or naming every output file that could not be written.
+     */
+    public Map<String, Long> run(File[] sources) throws IOException {
+        LinkedHashMap<String, Long> timings = new LinkedHashMap<>();
+        long start = System.nanoTime(), phase = start;
+
+        try (ParallelWriter writer = new ParallelWriter(fixture.getWriteThreads())) {
+            writer.submit(fixture.getFixtureName() + ".h", () -> fixture.writeHeaderFile(destination));
+            GenerationPipeline pipeline = new GenerationPipeline(parser, testWriter, fixture, queueDepth);
+            pipeline.setProgress(progress);
+            pipeline.setParsePool(parsePool);
+            progress.accept("parsing " + sources.length + " source files");
+            HashSet<Dependence> dependencies;
+            try {
+                dependencies = pipeline.run(sources, writer);
+            } finally {
+                if (saveCaches) {
+                    parser.saveParseCache();
+                    parser.saveCsvCache();
+                }
+            }
+            testUnits = pipeline.getTestUnits();
+            phase = lap(timings, "parse and tests", phase);
+            progress.accept("writing build files");
+
+            writer.submit("build file", () -> FileParser.writeBuildFile(dependencies, testUnits, fixture, destination));
+            if (fixture.getPrecompiledHeader())
+                writer.submit(UnitTestWriter.precompiledHeader, () -> testWriter.writePrecompiledHeader(dependencies));
+            writer.await();
+            lap(timings, "build files", phase);
+        }
+
+        timings.put("total", (System.nanoTime() - start) / 1000000);
+        return timings;
+    }
+
+    private static long lap(Map<String, Long> timings, String phase, long since) {
+        long now = System.nanoTime();
+        timings.put(phase, (now - since) / 1000000);
+        return now;
+    }
+}
@@ -0,0 +1,287 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Parses source files and writes their unit tests at the same time, rather than writing only once every file has been
+ * parsed.
+ * Each header's methods are handed from the parsing threads to the writing thread through a bounded queue as soon as
+ * the header has been read, and the writing thread hands each class's test to a ParallelWriter; when the writers fall
+ * behind the parsers wait for room in the queue, so only a few classes are ever held in memory however large the
+ * project is.
+ * Meant for generation without the GUI, where no methods have to be picked or given CSV files between the two steps.
+ *
+ * @author Axolotl Development Team
+ */
+public class GenerationPipeline {
+
+    //Default number of classes that may wait in the queue for the writer
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    //Put on the queue once every file has been parsed
+    private static final Method[] END = new Method[0];
+
+    /*
+     * parser - Supplies the parse settings and cache; its own method and dependency lists are not used.
+     * testWriter - Writes the unit tests to their destination.
+     * fixture - The test fixture the unit tests are written with.
+     * queueCapacity - The number of classes that may wait for the writer.
+     */
+    private final FileParser parser;
+    private final UnitTestWriter testWriter;
+    private final TestFixture fixture;
+    private final int queueCapacity;
+    //The unit test written for each class, in the order written
+    private final List<TestUnit> written;
+    //The unit test executables to be built from the last run
+    private ArrayList<TestUnit> testUnits;
+    //Told of each unit test as soon as it is written, from the thread that wrote it
+    private Consumer<String> progress;
+    //Threads shared with other pipelines that files are parsed on, or null to parse on threads of the pipeline's own
+    private ExecutorService parsePool;
+
+    /**
+     * Creates a new pipeline.
+     *
+     * @param parser        The parser whose settings and cache are used; files are parsed on 'parallelism' threads.
+     * @param testWriter    Writes the unit tests to their destination.
+     * @param fixture       The test fixture the unit tests are written with.
+     * @param queueCapacity The number of parsed classes that may wait for the writer before parsing pauses.
+     */
+    public GenerationPipeline(FileParser parser, UnitTestWriter testWriter, TestFixture fixture, int queueCapacity) {
+        this.parser = parser;
+        this.testWriter = testWriter;
+        this.fixture = fixture;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        written = Collections.synchronizedList(new ArrayList<>());
+        testUnits = new ArrayList<>();
+        progress = message -> { };
+    }
+
+    /**
+     * Setter method for the 'progress' attribute.
+     *
+     * @param progress Told "wrote <file>" as each unit test is written; It is called from the writing threads, so it
+     *                 must be safe to call from several threads at once.
+     */
+    public void setProgress(Consumer<String> progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Setter method for the 'parsePool' attribute.
+     *
+     * @param parsePool Threads to parse on, shared with other pipelines running at the same time so that the files of
+     *                  all of them are spread over the same threads; The pipeline never shuts it down. Null to parse on
+     *                  'parallelism' threads of the pipeline's own.
+     */
+    public void setParsePool(ExecutorService parsePool) {
+        this.parsePool = parsePool;
+    }
+
+    /**
+     * @return The unit test executables to be built from the tests written by the last run; Unity build batches are
+     * written once every test has been.
+     */
+    public ArrayList<TestUnit> getTestUnits() {
+        return testUnits;
+    }
+
+    /**
+     * Parses the source files and writes a unit test for each header to the destination as it is parsed;
+     * The dependencies of the .cpp files are gathered and returned for the makefile to be written from.
+     *
+     * @param sourceFiles The .cpp and .h files to be parsed.
+     * @return The dependencies of the parsed .cpp files.
+     * @throws IOException The first exception thrown while parsing a file, or the tests that could not be written.
+     */
+    public HashSet<Dependence> run(File[] sourceFiles) throws IOException {
+        try (ParallelWriter writer = new ParallelWriter(fixture.getWriteThreads())) {
+            return run(sourceFiles, writer);
+        }
+    }
+
+    /**
+     * Parses the source files and writes a unit test for each header to the destination as it is parsed, on a writer
+     * that may also be writing other files;
+     * Returns once every file handed to the writer, including those handed to it by others, has been written.
+     *
+     * @param sourceFiles The .cpp and .h files to be parsed; A file given more than once, such as by itself and through
+     *                    its folder, is parsed once.
+     * @param writer      The writer the unit tests are written on.
+     * @return The dependencies of the parsed .cpp files.
+     * @throws IOException If two headers would be tested in the same file, the first exception thrown while parsing a
+     *                     file, or the files that could not be written.
+     */
+    public HashSet<Dependence> run(File[] sourceFiles, ParallelWriter writer) throws IOException {
+        File[] sources = uniqueSources(sourceFiles);
+        written.clear();
+        BlockingQueue<Method[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Set<Dependence> dependencies = ConcurrentHashMap.newKeySet();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicInteger remaining = new AtomicInteger(sources.length);
+        // Set once the writer stops taking classes, so the files not yet parsed are skipped
+        AtomicBoolean stopped = new AtomicBoolean();
+        ExecutorService parsers = parsePool != null ? parsePool :
+                Executors.newFixedThreadPool(Math.max(1, parser.getParallelism()));
+
+        /* Largest files first, so a large file picked up last does not leave the writer waiting on it alone;
+           The sizes are read once up front rather than on every comparison.
+         */
+        Integer[] order = new Integer[sources.length];
+        long[] sizes = new long[sources.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            sizes[i] = sources[i].length();
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sizes[b], sizes[a]));
+        int handedOut = 0;
+        boolean ended = false;
+        try {
+            if (order.length == 0)
+                queue.put(END);
+            for (int index : order) {
+                File source = sources[index];
+                parsers.execute(() -> {
+                    try {
+                        if (failure.get() == null && !stopped.get()) {
+                            FileParser.ParseResult result = parser.parseFile(source);
+                            if (result.dependence != null)
+                                dependencies.add(result.dependence);
+                            if (result.methods != null && result.methods.length > 0)
+                                put(queue, result.methods);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        if (remaining.decrementAndGet() == 0)
+                            put(queue, END);
+                    }
+                });
+                handedOut++;
+            }
+
+            for (Method[] methods = queue.take(); methods != END; methods = queue.take()) {
+                ArrayList<Method> test = new ArrayList<>(Arrays.asList(methods));
+                String output = test.get(0).getClassName() + "TEST.cpp";
+                writer.submit(output, () -> {
+                    written.add(testWriter.writeSingleTest(test, fixture));
+                    progress.accept("wrote " + output);
+                });
+            }
+            ended = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Generation was interrupted.");
+        } finally {
+            // Lets go of any parser still waiting on a full queue after the writer failed; A shared pool's threads can
+            // not be interrupted, so the queue is emptied for them until the last one is done instead
+            stopped.set(true);
+            if (parsePool == null)
+                parsers.shutdownNow();
+            else if (!ended)
+                release(queue, remaining, order.length - handedOut);
+        }
+        IOException writeFailure = null;
+        try {
+            writer.await();
+        } catch (IOException e) {
+            writeFailure = e;
+        }
+
+        Exception e = failure.get();
+        if (e != null && writeFailure != null)
+            e.addSuppressed(writeFailure);
+        if (e instanceof IOException)
+            throw (IOException) e;
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        if (writeFailure != null)
+            throw writeFailure;
+        // Sorted, since tests written side by side finish in any order
+        testUnits = testWriter.writeTestUnits(UnitTestWriter.sortByName(written), fixture);
+        return new HashSet<>(dependencies);
+    }
+
+    /*
+    Drops the files given more than once, by their canonical path, so none is parsed twice or written twice to the same
+    unit test; Then makes sure no two headers are tested in the same file, since a header's unit test is named after
+    its file name alone and headers of the same name in different folders would overwrite each other's tests.
+    @returns each file once, in the order first given
+    @throws IOException naming both headers, if two of them have the same name
+     */
+    private static File[] uniqueSources(File[] sourceFiles) throws IOException {
+        LinkedHashMap<File, File> sources = new LinkedHashMap<>();
+        HashMap<String, File> headers = new HashMap<>();
+        for (File source : sourceFiles) {
+            File canonical = source.getCanonicalFile();
+            if (sources.putIfAbsent(canonical, source) != null)
+                continue;
+            String name = source.getName();
+            if (!name.endsWith(".h"))
+                continue;
+            String className = name.substring(0, name.indexOf('.'));
+            File other = headers.putIfAbsent(className, canonical);
+            if (other != null)
+                throw new IOException("Headers " + other + " and " + canonical + " would both be tested in " +
+                        className + "TEST.cpp; Headers of the same name must be generated separately.");
+        }
+        return sources.values().toArray(new File[sources.size()]);
+    }
+
+    /*
+    Hands a parsed class, or the end of the parse, to the writer, waiting for room in the queue.
+     */
+    private static void put(BlockingQueue<Method[]> queue, Method[] methods) {
+        try {
+            queue.put(methods);
+        } catch (InterruptedException e) {
+            // Only a pool of the pipeline's own is interrupted, once the writer has stopped taking classes
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    Empties the queue after the writer stopped early, until the last parser of a shared pool has handed over the end of
+    the parse, so that none is left waiting for room in it.
+    @param notHandedOut the number of files never handed to the pool, which will not count themselves down
+     */
+    private static void release(BlockingQueue<Method[]> queue, AtomicInteger remaining, int notHandedOut) {
+        // Every file handed out has already been parsed, so no parser is waiting and none will hand over the end
+        if (notHandedOut > 0 && remaining.addAndGet(-notHandedOut) == 0)
+            return;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (queue.take() == END)
+                        return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point that generates the build file, unit tests and test fixture for a set of source files without
+ * the GUI; Meant for build agents and scripts.
+ * Drives a GenerationJob of the FileParser, MakeFileWriter and UnitTestWriter directly and never touches the
+ * Controller, FrontEndGUI or Main classes, so no JavaFX or AWT class is loaded.
+ * Prints how long each phase of the generation took before exiting.
+ *
+ * @author Axolotl Development Team
+ */
+public class HeadlessMain {
+
+    static final String USAGE =
+            "Usage: HeadlessMain -d <destination> [options] <.cpp/.h files or directories>...\n" +
+            "  -d, --destination <dir>     Folder the generated files are written to\n" +
+            "  -j, --threads <n>           Number of threads to parse with (default: one per core)\n" +
+            "  --cache <file>              Parse cache file (default: " + ParseCache.DEFAULT_CACHE_FILE + ")\n" +
+            "  --csv-cache <dir>           CSV cache folder (default: " + CsvCache.DEFAULT_DIRECTORY + ")\n" +
+            "  --no-cache                  Parse every file and read every CSV file, ignoring and not updating the " +
+            "caches\n" +
+            "  --queue-depth <n>           Parsed classes that may wait for the test writer (default: " +
+            GenerationPipeline.DEFAULT_QUEUE_CAPACITY + ")\n" +
+            "  --scan-whole-file           Read .cpp files to their end for #include directives\n" +
+            "  --fixture-name <name>       Name of the test fixture header\n" +
+            "  --compiler <name>           Compiler used by the build file\n" +
+            "  --flags <flags>             Flags used when compiling\n" +
+            "  --executable <name>         Name of the final executable\n" +
+            "  --build-system <make|ninja> Build file to generate (default: make)\n" +
+            "  --auto-deps                 Let the compiler track header dependencies (-MMD -MP)\n" +
+            "  --build-dir <dir>           Folder for objects and dependency files (--auto-deps, ninja)\n" +
+            "  --pch                       Precompile a header shared by every unit test\n" +
+            "  --unity-batches <n>         Compile the unit tests as n unity build batches (default: 0, off)\n" +
+            "  --max-test-lines <n>        Split longer unit tests into shards (default: 0, never)\n" +
+            "  --static-library            Link the unit tests against an archive of the project's objects\n" +
+            "  --table-driven-csv          Test CSV rows from a table and a loop instead of a line per row\n" +
+            "  --runtime-csv-data          Read CSV rows from binary data files when the tests run\n" +
+            "  --csv-threads <n>           Threads a large CSV file is read with (default: 1)\n" +
+            "  --write-threads <n>         Generated files written at the same time (default: " +
+            ParallelWriter.DEFAULT_CONCURRENCY + ")\n" +
+            "  --object-cache              Compile through a local object cache, reporting its hit rate\n" +
+            "  --object-cache-dir <dir>    Folder of the object cache (default: .objcache)\n" +
+            "  --object-cache-size <mb>    Size the object cache is kept under (default: 512)\n" +
+            "  --string-default <value>    Default test value for strings\n" +
+            "  --char-default <value>      Default test value for chars\n" +
+            "  --int-default <value>       Default test value for ints\n" +
+            "  --double-default <value>    Default test value for doubles\n" +
+            "  --bool-default <value>      Default test value for bools\n" +
+            "  -h, --help                  Show this message";
+
+    /*
+     * workingDirectory - The folder relative paths are resolved against, or null for the process's own.
+     * sources - The source files to be parsed, with directories already expanded.
+     * destination - The folder the output is written to.
+     * fixture - The test fixture the output is generated with.
+     * threads - The number of threads to parse with.
+     * queueDepth - The number of parsed classes that may wait for the test writer.
+     * cacheFile - The parse cache file, or null if no cache is used.
+     * csvCacheDirectory - The CSV cache folder, or null if no cache is used.
+     * scanWholeFile - Whether .cpp files are read to their end for includes.
+     */
+    private final File workingDirectory;
+    private final ArrayList<File> sources;
+    private File destination;
+    private final TestFixture fixture;
+    private int threads, queueDepth;
+    private File cacheFile, csvCacheDirectory;
+    private boolean scanWholeFile;
+
+    /**
+     * Creates a new generation with the default test fixture and settings.
+     */
+    public HeadlessMain() {
+        this(null);
+    }
+
+    /**
+     * Creates a new generation with the default test fixture and settings, whose relative paths are resolved against
+     * a folder other than the process's working directory; For arguments sent by a client in another folder.
+     *
+     * @param workingDirectory The folder relative paths are resolved against, or null for the process's own.
+     */
+    public HeadlessMain(File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+        sources = new ArrayList<>();
+        fixture = new TestFixture();
+        threads = Runtime.getRuntime().availableProcessors();
+        queueDepth = GenerationPipeline.DEFAULT_QUEUE_CAPACITY;
+        cacheFile = file(ParseCache.DEFAULT_CACHE_FILE);
+        csvCacheDirectory = file(CsvCache.DEFAULT_DIRECTORY);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Reads the command line arguments and runs the generation they describe.
+     *
+     * @param args The command line arguments.
+     * @param out  Where the timings are printed.
+     * @param err  Where usage and errors are printed.
+     * @return The exit status; 0 on success, 1 if generation failed and 2 if the arguments were not understood.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        HeadlessMain generation = new HeadlessMain();
+        try {
+            if (!generation.parseArguments(args)) {
+                out.println(USAGE);
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            Map<String, Long> timings = generation.generate();
+            out.println("Phase timings:");
+            timings.forEach((phase, millis) -> out.printf("  %-16s %8d ms%n", phase, millis));
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            err.println("Generation failed: " + e);
+            return 1;
+        }
+    }
+
+    /**
+     * Reads the command line arguments into this generation's settings.
+     *
+     * @param args The command line arguments.
+     * @return false if help was asked for and nothing should be generated.
+     * @throws IllegalArgumentException If an argument is unknown, missing its value or has an invalid value.
+     */
+    public boolean parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    return false;
+                case "-d":
+                case "--destination":
+                    destination = file(value(args, ++i, arg));
+                    break;
+                case "-j":
+                case "--threads":
+                    threads = Math.max(1, parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--queue-depth":
+                    queueDepth = Math.max(1, parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--cache":
+                    cacheFile = file(value(args, ++i, arg));
+                    break;
+                case "--csv-cache":
+                    csvCacheDirectory = file(value(args, ++i, arg));
+                    break;
+                case "--no-cache":
+                    cacheFile = null;
+                    csvCacheDirectory = null;
+                    break;
+                case "--scan-whole-file":
+                    scanWholeFile = true;
+                    break;
+                case "--fixture-name":
+                    fixture.setFixtureName(value(args, ++i, arg));
+                    break;
+                case "--compiler":
+                    fixture.setCompiler(value(args, ++i, arg));
+                    break;
+                case "--flags":
+                    fixture.setFlags(value(args, ++i, arg));
+                    break;
+                case "--executable":
+                    fixture.setFinalExecutableName(value(args, ++i, arg));
+                    break;
+                case "--build-system":
+                    try {
+                        fixture.setBuildSystem(TestFixture.BuildSystem.valueOf(value(args, ++i, arg).toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(arg + " expects make or ninja.");
+                    }
+                    break;
+                case "--auto-deps":
+                    fixture.setAutomaticDependencies(true);
+                    break;
+                case "--build-dir":
+                    fixture.setBuildDirectory(value(args, ++i, arg));
+                    break;
+                case "--pch":
+                    fixture.setPrecompiledHeader(true);
+                    break;
+                case "--unity-batches":
+                    fixture.setUnityBatches(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--max-test-lines":
+                    fixture.setMaxTestLines(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--static-library":
+                    fixture.setStaticLibrary(true);
+                    break;
+                case "--table-driven-csv":
+                    fixture.setTableDrivenCsv(true);
+                    break;
+                case "--runtime-csv-data":
+                    fixture.setRuntimeCsvData(true);
+                    break;
+                case "--csv-threads":
+                    fixture.setCsvThreads(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--write-threads":
+                    fixture.setWriteThreads(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--object-cache":
+                    fixture.setObjectCache(true);
+                    break;
+                case "--object-cache-dir":
+                    fixture.setObjectCacheDirectory(value(args, ++i, arg));
+                    break;
+                case "--object-cache-size":
+                    fixture.setObjectCacheSize(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--string-default":
+                    fixture.setStringDefault(value(args, ++i, arg));
+                    break;
+                case "--char-default":
+                    String character = value(args, ++i, arg);
+                    if (character.length() != 1)
+                        throw new IllegalArgumentException(arg + " expects a single character.");
+                    fixture.setCharacterDefault(character.charAt(0));
+                    break;
+                case "--int-default":
+                    fixture.setIntegerDefault(parseNumber(value(args, ++i, arg), arg).intValue());
+                    break;
+                case "--double-default":
+                    fixture.setDoubleDefault(parseDecimal(value(args, ++i, arg), arg));
+                    break;
+                case "--bool-default":
+                    String bool = value(args, ++i, arg);
+                    if (!bool.equalsIgnoreCase("true") && !bool.equalsIgnoreCase("false"))
+                        throw new IllegalArgumentException(arg + " expects true or false.");
+                    fixture.setBooleanDefault(Boolean.parseBoolean(bool));
+                    break;
+                default:
+                    if (arg.startsWith("-"))
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    addSource(file(arg));
+            }
+        }
+        if (destination == null)
+            throw new IllegalArgumentException("No destination given.");
+        if (!destination.isDirectory())
+            throw new IllegalArgumentException("Destination " + destination + " is not a directory.");
+        if (sources.isEmpty())
+            throw new IllegalArgumentException("No source files given.");
+        return true;
+    }
+
+    /**
+     * Parses the sources and writes the build file, unit tests and test fixture to the destination, as a GenerationJob
+     * of its own.
+     *
+     * @return How long each phase took in milliseconds, in the order the phases ran.
+     * @throws IOException If a source file could not be read, or naming every output file that could not be written.
+     */
+    public Map<String, Long> generate() throws IOException {
+        return createJob(new HashMap<>(), new HashMap<>()).run(getSourceFiles());
+    }
+
+    /**
+     * Creates the job generating the output these arguments describe, with a parser of its own;
+     * Caches already loaded are reused, so that jobs run one after another in the same process share what they cached.
+     *
+     * @param parseCaches The parse caches already loaded, mapped by their absolute file; Caches loaded are added.
+     * @param csvCaches   The CSV caches already loaded, mapped by their absolute folder; Caches loaded are added.
+     * @return A job ready to be run on the sources.
+     */
+    public GenerationJob createJob(Map<File, ParseCache> parseCaches, Map<File, CsvCache> csvCaches) {
+        FileParser parser = new FileParser();
+        parser.setParallelism(threads);
+        parser.setScanWholeFileForIncludes(scanWholeFile);
+        if (cacheFile != null)
+            parser.setParseCache(parseCaches.computeIfAbsent(cacheFile.getAbsoluteFile(),
+                    f -> ParseCache.load(f, ParseCache.DEFAULT_MAX_BYTES)));
+        if (csvCacheDirectory != null)
+            parser.setCsvCache(csvCaches.computeIfAbsent(csvCacheDirectory.getAbsoluteFile(), CsvCache::load));
+        GenerationJob job = new GenerationJob(destination, fixture, parser);
+        job.setQueueDepth(queueDepth);
+        return job;
+    }
+
+    /**
+     * @return The source files to be parsed, with directories already expanded.
+     */
+    public File[] getSourceFiles() {
+        return sources.toArray(new File[sources.size()]);
+    }
+
+    /*
+    Resolves a path given in the arguments against the working directory.
+     */
+    private File file(String path) {
+        File file = new File(path);
+        return workingDirectory == null || file.isAbsolute() ? file : new File(workingDirectory, path);
+    }
+
+    /*
+    Adds a source file, or every .cpp and .h file under a source directory in name order.
+    @param source the file or directory named on the command line
+     */
+    private void addSource(File source) {
+        if (source.isDirectory()) {
+            try (Stream<Path> walk = Files.walk(source.toPath())) {
+                sources.addAll(walk.filter(p -> p.toString().endsWith(".cpp") || p.toString().endsWith(".h"))
+                        .sorted().map(Path::toFile).collect(Collectors.toList()));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not list source directory " + source + ": " + e);
+            }
+        } else if (source.isFile())
+            sources.add(source);
+        else
+            throw new IllegalArgumentException("Source " + source + " does not exist.");
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length)
+            throw new IllegalArgumentException(option + " expects a value.");
+        return args[index];
+    }
+
+    private static Long parseNumber(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a whole number.");
+        }
+    }
+
+    private static Double parseDecimal(String value, String option) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number.");
+        }
+    }
+}
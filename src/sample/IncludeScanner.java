@@ -0,0 +1,286 @@
+package sample;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Finds the #include directives of a C++ source file by reading its raw bytes, usually straight out of a memory mapped
+ * file, so that no line of the file has to be decoded or copied into a String.
+ * Line comments, block comments and string literals are skipped, so an #include that was commented out is not read;
+ * A single quote only opens a character literal where one may start, so digit separators such as 1'000 are not one.
+ * Unless asked to read the whole file, scanning stops at the first curly brace outside of a preprocessor directive,
+ * since by then the includes heading the file are over.
+ *
+ * @author Axolotl Development Team
+ */
+public class IncludeScanner {
+
+    //The directive this scanner looks for, without the '#'
+    private static final byte[] INCLUDE = "include".getBytes(StandardCharsets.US_ASCII);
+
+    /*
+     * bytes - The contents of the file being scanned.
+     * limit - The number of bytes in the file.
+     * wholeFile - Whether to keep scanning past the first curly brace.
+     * name - Holds the name of an include while it is turned into a String; grown if a name does not fit.
+     */
+    private final ByteBuffer bytes;
+    private final int limit;
+    private final boolean wholeFile;
+    private byte[] name;
+
+    /**
+     * Creates a new scanner over the contents of a file.
+     *
+     * @param bytes     The contents of the file, from its first byte to its limit.
+     * @param wholeFile Whether to read the whole file rather than stopping once its includes are clearly over.
+     */
+    public IncludeScanner(ByteBuffer bytes, boolean wholeFile) {
+        this.bytes = bytes;
+        this.limit = bytes.limit();
+        this.wholeFile = wholeFile;
+        name = new byte[64];
+    }
+
+    /**
+     * Reads the file for #include directives;
+     * Libraries should be enclosed in <> while project classes should be enclosed in "";
+     * Everything from the first '.' of the included name on is stripped, so that "class1.h" is stored as class1.
+     *
+     * @param libraries    The set the names of included c++ libraries are added to.
+     * @param dependencies The set the names of included project classes are added to.
+     * @throws RuntimeException If an #include line does not appear to be formatted properly.
+     */
+    public void scan(Set<String> libraries, Set<String> dependencies) {
+        boolean lineStart = true;
+        int position = startOfText();
+        while (position < limit) {
+            byte b = bytes.get(position);
+            switch (b) {
+                case '\n':
+                    lineStart = true;
+                    position++;
+                    break;
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\f':
+                case 0x0B:
+                    position++;
+                    break;
+                case '/':
+                    if (at(position + 1, '/'))
+                        position = endOfLine(position);
+                    else if (at(position + 1, '*'))
+                        // A comment is white space, so a directive may still follow it on this line
+                        position = endOfBlockComment(position + 2);
+                    else {
+                        lineStart = false;
+                        position++;
+                    }
+                    break;
+                case '#':
+                    if (lineStart)
+                        position = directive(position + 1, libraries, dependencies);
+                    else
+                        position++;
+                    break;
+                case '"':
+                    lineStart = false;
+                    position = endOfLiteral(position);
+                    break;
+                case '\'':
+                    lineStart = false;
+                    position = opensCharacter(position) ? endOfLiteral(position) : position + 1;
+                    break;
+                case '{':
+                    if (!wholeFile)
+                        return;
+                    lineStart = false;
+                    position++;
+                    break;
+                default:
+                    lineStart = false;
+                    position++;
+            }
+        }
+    }
+
+    /*
+    Reads one preprocessor directive, storing it if it is an #include;
+    @param position the position just past the '#'
+    @returns the position of the line break ending the directive, or the limit
+     */
+    private int directive(int position, Set<String> libraries, Set<String> dependencies) {
+        position = skipBlanks(position);
+        if (!matches(position, INCLUDE))
+            return endOfDirective(position);
+        int after = position + INCLUDE.length;
+        if (after < limit && !isBlank(bytes.get(after)) && bytes.get(after) != '<' && bytes.get(after) != '"')
+            // Another directive that happens to start with "include"
+            return endOfDirective(after);
+
+        position = skipBlanks(after);
+        byte close;
+        Set<String> target;
+        switch (position < limit ? bytes.get(position) : 0) {
+            case '<':
+                close = '>';
+                target = libraries;
+                break;
+            case '"':
+                close = '"';
+                target = dependencies;
+                break;
+            default:
+                /* C++ #include signifier is very syntactically strict;
+                   We can expect any compilable code to never cause this exception to be thrown.
+                 */
+                throw new RuntimeException("The #include line does not appear to be formatted properly.");
+        }
+        int start = ++position;
+        int end = -1;
+        while (position < limit && bytes.get(position) != close && bytes.get(position) != '\n') {
+            // Strips .h if it exists in the include declaration
+            if (end == -1 && bytes.get(position) == '.')
+                end = position;
+            position++;
+        }
+        if (position == limit || bytes.get(position) != close)
+            throw new RuntimeException("The #include line does not appear to be formatted properly.");
+        target.add(text(start, end == -1 ? position : end));
+        return endOfDirective(position + 1);
+    }
+
+    /*
+    @param position a position inside a preprocessor directive
+    @returns the position of the line break ending the directive, following any backslash continued lines
+     */
+    private int endOfDirective(int position) {
+        while (position < limit) {
+            byte b = bytes.get(position);
+            if (b == '\n')
+                return position;
+            if (b == '\\' && at(position + 1, '\n'))
+                position += 2;
+            else if (b == '\\' && at(position + 1, '\r') && at(position + 2, '\n'))
+                position += 3;
+            else if (b == '/' && at(position + 1, '/'))
+                return endOfLine(position);
+            else if (b == '/' && at(position + 1, '*'))
+                position = endOfBlockComment(position + 2);
+            else
+                position++;
+        }
+        return limit;
+    }
+
+    /*
+    @returns the position of the next line break at or after position, or the limit
+     */
+    private int endOfLine(int position) {
+        while (position < limit && bytes.get(position) != '\n')
+            position++;
+        return position;
+    }
+
+    /*
+    @param position the position just past the opening of a block comment
+    @returns the position just past the end of the comment, or the limit
+     */
+    private int endOfBlockComment(int position) {
+        while (position + 1 < limit) {
+            if (bytes.get(position) == '*' && bytes.get(position + 1) == '/')
+                return position + 2;
+            position++;
+        }
+        return limit;
+    }
+
+    /*
+    @param position the position of the opening quote of a string or character literal
+    @returns the position just past the closing quote; an unclosed literal ends at the line break
+     */
+    private int endOfLiteral(int position) {
+        byte quote = bytes.get(position++);
+        while (position < limit) {
+            byte b = bytes.get(position);
+            if (b == '\\')
+                position += 2;
+            else if (b == quote)
+                return position + 1;
+            else if (b == '\n')
+                return position;
+            else
+                position++;
+        }
+        return limit;
+    }
+
+    /*
+    A quote after a digit or a letter is a digit separator, as in 1'000, unless the word before it is one of the
+    prefixes of a character literal, as in L'x' or u8'x'.
+    @param position the position of a single quote
+    @returns whether the quote opens a character literal
+     */
+    private boolean opensCharacter(int position) {
+        int start = position;
+        while (start > 0 && isWordByte(bytes.get(start - 1)))
+            start--;
+        int length = position - start;
+        if (length == 0)
+            return true;
+        byte first = bytes.get(start);
+        return length == 1 && (first == 'L' || first == 'u' || first == 'U') ||
+                length == 2 && first == 'u' && bytes.get(start + 1) == '8';
+    }
+
+    /*
+    @returns the position just past any byte order mark heading the file
+     */
+    private int startOfText() {
+        if (limit >= 3 && bytes.get(0) == (byte) 0xEF && bytes.get(1) == (byte) 0xBB && bytes.get(2) == (byte) 0xBF)
+            return 3;
+        return 0;
+    }
+
+    private int skipBlanks(int position) {
+        while (position < limit && isBlank(bytes.get(position)))
+            position++;
+        return position;
+    }
+
+    private boolean matches(int position, byte[] word) {
+        if (position + word.length > limit)
+            return false;
+        for (int i = 0; i < word.length; i++)
+            if (bytes.get(position + i) != word[i])
+                return false;
+        return true;
+    }
+
+    private boolean at(int position, char c) {
+        return position < limit && bytes.get(position) == c;
+    }
+
+    /*
+    Copies the bytes between start and end into the reused name array and decodes them.
+     */
+    private String text(int start, int end) {
+        int length = end - start;
+        if (length > name.length)
+            name = new byte[Math.max(length, name.length * 2)];
+        for (int i = 0; i < length; i++)
+            name[i] = bytes.get(start + i);
+        return new String(name, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWordByte(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
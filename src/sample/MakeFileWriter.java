@@ -1,6 +1,8 @@
 package sample;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 
 /**
@@ -13,32 +15,100 @@ public class MakeFileWriter {
 
     /**
      * Creates a makefile for a project given a list of the dependencies for the project and a name for the
-     * final executable
+     * final executable;
+     * Each translation unit gets its own compile rule and the executable is linked in a separate step, so every .cpp
+     * file is compiled exactly once and make -j can compile them in parallel.
      * @param depList a HashSet of depencencies for each file the executable is dependant on
      * @param fixture exeName the test fixture containing the information pertainent to making this makefile
-     * @param destination
-     * @return
-     * @throws IOException
+     * @param destination the folder the makefile is written to
+     * @return the written makefile
+     * @throws IOException if the makefile could not be written
      */
     public static File writeMakefile(HashSet<Dependence> depList, TestFixture fixture, File destination)
             throws IOException {
+        return writeMakefile(depList, new ArrayList<>(), fixture, destination);
+    }
+
+    /**
+     * Creates a makefile for a project and its unit tests;
+     * The project's executable is built by default, and the unit test executables by the tests target.
+     * @param depList a HashSet of depencencies for each file the executable is dependant on
+     * @param testUnits the unit test executables to be built
+     * @param fixture the test fixture containing the information pertainent to making this makefile
+     * @param destination the folder the makefile is written to
+     * @return the written makefile
+     * @throws IOException if the makefile could not be written
+     */
+    public static File writeMakefile(HashSet<Dependence> depList, Collection<TestUnit> testUnits,
+                                     TestFixture fixture, File destination) throws IOException {
         File temp = new File(destination.getAbsolutePath() + "/makefile");
-        temp.createNewFile();
-        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
+        //Rendered in full first, so an unchanged makefile keeps its last modified time
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
             pw.println("#Variable for the compiler to be used\nCC=" + fixture.getCompiler() + "\n#Variable for the " +
                     "flags to use when compiling\nFLAGS=" + fixture.getFlags() + "\n");
-            pw.print("all: " + fixture.getFinalExecutableName() + "\n\n" + fixture.getFinalExecutableName() + ":");
+            /* With automatic dependencies, objects and the .d files the compiler writes next to them go into their own
+               folder, which is made before the first object is compiled into it.
+             */
+            boolean autoDeps = fixture.getAutomaticDependencies();
+            String objectDirectory = autoDeps ? "$(BUILD_DIR)" : "";
+            if (autoDeps)
+                pw.println("#Folder for object and dependency files\nBUILD_DIR=" + fixture.getBuildDirectory() + "\n");
+            //Objects are compiled through the object cache wrapper, which reports its hit rate once a target is built
+            String cache = "";
+            String stats = "";
+            if (fixture.getObjectCache()) {
+                pw.println("#Compile wrapper reusing unchanged objects from the object cache\nCACHE=" +
+                        ObjectCacheWriter.wrapperCommand + "\n");
+                cache = "$(CACHE) ";
+                stats = "\t@$(CACHE) --stats\n";
+            }
+            BuildPlan plan = BuildPlan.forProject(depList, testUnits, fixture, objectDirectory, autoDeps);
+
             StringBuilder objectList = new StringBuilder();
-            depList.forEach(c -> objectList.append(" " + c.getClassName() + ".o"));
-            pw.print(objectList.toString() + "\n\t$(CC) " + objectList.toString() + " -o " + fixture.getFinalExecutableName() + "\n\n");
-            depList.forEach(c -> pw.print(c.toMakeString()));
-            pw.print("clean:\n\trm *.o " + fixture.getFinalExecutableName());
-        } catch (IOException e) {
-            System.out.println(e.getStackTrace());
+            plan.compiles.forEach(c -> objectList.append(" " + c.object));
+            StringBuilder outputList = new StringBuilder();
+            plan.links.forEach(l -> outputList.append(" " + l.output));
+            if (plan.precompiledHeader != null)
+                outputList.append(" " + plan.precompiledHeader.object);
+            pw.print(".PHONY: all tests clean\n\n");
+            pw.print("all: " + String.join(" ", plan.defaultTargets) + "\n" + stats + "\n");
+            pw.print("tests: " + String.join(" ", plan.testTargets) + "\n" + stats + "\n");
+            pw.print("OBJECTS =" + objectList.toString() + "\n\n");
+            //Link steps, which only run once every object they need is up to date
+            for (BuildPlan.Link link : plan.links) {
+                pw.print(link.output + ": " + String.join(" ", link.inputs) + "\n");
+                //An archive is made anew, so objects of removed classes do not linger in it
+                pw.print(link.archive ? "\trm -f $@\n\t$(AR) rcs $@ $^\n\n" : "\t$(CC) $^ -o $@\n\n");
+            }
+            //The header shared by the unit tests, precompiled once before any test is compiled
+            if (plan.precompiledHeader != null) {
+                BuildPlan.Compile pch = plan.precompiledHeader;
+                pw.print(pch.object + ": " + pch.source);
+                for (String header : pch.prerequisites)
+                    pw.print(" " + header);
+                pw.print("\n\t$(CC) $(FLAGS) -x c++-header " + pch.source + " -o $@\n\n");
+            }
+            //One compile rule per translation unit
+            for (BuildPlan.Compile compile : plan.compiles) {
+                pw.print(compile.object + ": " + compile.source);
+                for (String header : compile.prerequisites)
+                    pw.print(" " + header);
+                if (autoDeps)
+                    pw.print(" | " + objectDirectory);
+                pw.print("\n\t" + cache + "$(CC) $(FLAGS)" + (autoDeps ? " -MMD -MP" : "") + " -c " + compile.source +
+                        " -o $@\n\n");
+            }
+            if (autoDeps) {
+                pw.print(objectDirectory + ":\n\tmkdir -p " + objectDirectory + "\n\n");
+                //Header dependencies written by the compiler; missing before the first build, which builds everything
+                pw.print("-include $(OBJECTS:.o=.d)\n\n");
+                pw.print("clean:\n\trm -rf " + objectDirectory + outputList + "\n");
+            }
+            else
+                pw.print("clean:\n\trm -f $(OBJECTS)" + outputList + "\n");
         }
+        GeneratedFile.write(temp, text.toString());
         return temp;
     }
 }
-
-
-
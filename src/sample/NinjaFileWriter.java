@@ -0,0 +1,122 @@
+package sample;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * Library class that writes a build.ninja file for the same build the MakeFileWriter describes, for use with the Ninja
+ * build system, which starts a no-op or incremental build far faster than make on large projects.
+ * Every object is compiled by its own build statement with a compiler generated depfile, so header changes are always
+ * tracked; objects are built into the test fixture's build directory.
+ * @author Axolotl Development Team
+ */
+public class NinjaFileWriter {
+
+    /**
+     * Creates a build.ninja file for a project given a list of the dependencies for the project and the test fixture
+     * describing the compiler, flags and final executable
+     * @param depList a HashSet of dependencies for each file the executable is dependant on
+     * @param fixture the test fixture containing the information pertinent to making this build file
+     * @param destination the folder the build file is written to
+     * @return the written build file
+     * @throws IOException if the build file could not be written
+     */
+    public static File writeNinjaFile(HashSet<Dependence> depList, TestFixture fixture, File destination)
+            throws IOException {
+        return writeNinjaFile(depList, new ArrayList<>(), fixture, destination);
+    }
+
+    /**
+     * Creates a build.ninja file for a project and its unit tests;
+     * The project's executable is built by default, and the unit test executables by the tests target.
+     * @param depList a HashSet of dependencies for each file the executable is dependant on
+     * @param testUnits the unit test executables to be built
+     * @param fixture the test fixture containing the information pertinent to making this build file
+     * @param destination the folder the build file is written to
+     * @return the written build file
+     * @throws IOException if the build file could not be written
+     */
+    public static File writeNinjaFile(HashSet<Dependence> depList, Collection<TestUnit> testUnits,
+                                      TestFixture fixture, File destination) throws IOException {
+        File temp = new File(destination.getAbsolutePath() + "/build.ninja");
+        BuildPlan plan = BuildPlan.forProject(depList, testUnits, fixture, "$builddir", true);
+        //Rendered in full first, so an unchanged build file is not rewritten and does not make ninja regenerate
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
+            pw.print("#Variable for the compiler to be used\ncc = " + fixture.getCompiler() + "\n#Variable for the " +
+                    "flags to use when compiling\nflags = " + fixture.getFlags() + "\n#Folder for object and " +
+                    "dependency files\nbuilddir = " + escape(fixture.getBuildDirectory()) + "\n\n");
+            if (fixture.getObjectCache())
+                pw.print("#Compile wrapper reusing unchanged objects from the object cache\ncache = " +
+                        ObjectCacheWriter.wrapperCommand + "\n\n");
+            pw.print("rule cxx\n  command = " + (fixture.getObjectCache() ? "$cache " : "") +
+                    "$cc $flags -MMD -MF $out.d -c $in -o $out\n  depfile = $out.d\n" +
+                    "  deps = gcc\n  description = CXX $out\n\n");
+            pw.print("rule link\n  command = $cc $in -o $out\n  description = LINK $out\n\n");
+            if (plan.links.stream().anyMatch(l -> l.archive))
+                pw.print("rule archive\n  command = rm -f $out && ar rcs $out $in\n  description = AR $out\n\n");
+            //The header shared by the unit tests, precompiled once before any test is compiled
+            if (plan.precompiledHeader != null) {
+                BuildPlan.Compile pch = plan.precompiledHeader;
+                pw.print("rule pch\n  command = $cc $flags -x c++-header $in -o $out\n  description = PCH $out\n\n");
+                pw.print("build " + escape(pch.object) + ": pch " + escape(pch.source) + implicit(pch) + "\n\n");
+            }
+            //One build statement per translation unit
+            for (BuildPlan.Compile compile : plan.compiles)
+                pw.print("build " + compile.object + ": cxx " + escape(compile.source) + implicit(compile) + "\n");
+            pw.println();
+            for (BuildPlan.Link link : plan.links) {
+                pw.print("build " + escape(link.output) + (link.archive ? ": archive" : ": link"));
+                for (String input : link.inputs)
+                    pw.print(" " + input);
+                pw.print("\n");
+            }
+            pw.print("\nbuild tests: phony");
+            for (String target : plan.testTargets)
+                pw.print(" " + escape(target));
+            pw.print("\n\n");
+            /* Reports the object cache's hit rate once the default targets are built; The statement has no output, so
+               Ninja runs it on every build.
+             */
+            if (fixture.getObjectCache()) {
+                pw.print("rule cachestats\n  command = $cache --stats\n  description = Object cache statistics\n" +
+                        "  pool = console\n\nbuild cachestats: cachestats |");
+                for (String target : plan.defaultTargets)
+                    pw.print(" " + escape(target));
+                pw.print("\n\n");
+            }
+            pw.print("default");
+            for (String target : plan.defaultTargets)
+                pw.print(" " + escape(target));
+            if (fixture.getObjectCache())
+                pw.print(" cachestats");
+            pw.print("\n");
+        }
+        GeneratedFile.write(temp, text.toString());
+        return temp;
+    }
+
+    /*
+    @returns the implicit dependencies of a build statement, rebuilding it when they change without passing them to
+    the compiler
+     */
+    private static String implicit(BuildPlan.Compile compile) {
+        if (compile.prerequisites.isEmpty())
+            return "";
+        StringBuilder implicit = new StringBuilder(" |");
+        for (String prerequisite : compile.prerequisites)
+            implicit.append(" ").append(escape(prerequisite));
+        return implicit.toString();
+    }
+
+    /*
+    Escapes the characters Ninja treats specially in paths
+    @param path a file name or path
+    @returns the path as it is to be written in a build statement
+     */
+    private static String escape(String path) {
+        return path.replace("$", "$$").replace(" ", "$ ").replace(":", "$:");
+    }
+}
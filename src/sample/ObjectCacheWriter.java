@@ -0,0 +1,150 @@
+package sample;
+
+import java.io.*;
+
+/**
+ * Library class that writes the object cache wrapper a build file compiles through when the test fixture asks for an
+ * object cache.
+ * The wrapper is a POSIX shell script, so it needs nothing installed beyond the shell tools every build machine already
+ * has; an object is stored under the hash of the compiler's version, the compile arguments and the preprocessed source,
+ * so any translation unit whose preprocessed text is unchanged is copied out of the cache instead of being compiled.
+ * The cache is kept under the fixture's size cap by evicting the least recently used objects, and the build file runs
+ * the wrapper with --stats once its targets are built to report the hit rate of the build.
+ * @author Axolotl Development Team
+ */
+public class ObjectCacheWriter {
+
+    //Name of the wrapper script, written next to the build file
+    public static final String wrapperName = "objcache.sh";
+
+    /*
+    How the build file runs the wrapper; run through sh so the script does not need to be executable
+     */
+    public static final String wrapperCommand = "sh " + wrapperName;
+
+    /*
+    Everything in the wrapper after the settings taken from the test fixture
+     */
+    private static final String script =
+            "mkdir -p \"$CACHE_DIR\" || exit 1\n" +
+            "\n" +
+            "if [ \"$1\" = \"--stats\" ]; then\n" +
+            "    hits=0; misses=0\n" +
+            "    [ -f \"$CACHE_DIR/hits\" ] && hits=$(wc -l < \"$CACHE_DIR/hits\")\n" +
+            "    [ -f \"$CACHE_DIR/misses\" ] && misses=$(wc -l < \"$CACHE_DIR/misses\")\n" +
+            "    total=$((hits + misses))\n" +
+            "    rate=0\n" +
+            "    [ \"$total\" -gt 0 ] && rate=$((hits * 100 / total))\n" +
+            "    size=$(du -sk \"$CACHE_DIR\" | cut -f1)\n" +
+            "    echo \"Object cache: $hits hits, $misses misses ($rate% hit rate), $size KB in $CACHE_DIR\"\n" +
+            "    : > \"$CACHE_DIR/hits\"; : > \"$CACHE_DIR/misses\"\n" +
+            "    exit 0\n" +
+            "fi\n" +
+            "\n" +
+            "hash() {\n" +
+            "    if command -v sha1sum > /dev/null 2>&1; then sha1sum | cut -d' ' -f1\n" +
+            "    elif command -v shasum > /dev/null 2>&1; then shasum | cut -d' ' -f1\n" +
+            "    else cksum | tr ' ' '-'\n" +
+            "    fi\n" +
+            "}\n" +
+            "\n" +
+            "#Splits the command into its output, its dependency file options and the arguments to preprocess with\n" +
+            "out=; depfile=; depflags=; next=; compiler=$1\n" +
+            "for arg do\n" +
+            "    shift\n" +
+            "    case $next in\n" +
+            "        o) out=$arg; next=; continue;;\n" +
+            "        f) depfile=$arg; next=; continue;;\n" +
+            "    esac\n" +
+            "    case $arg in\n" +
+            "        -o) next=o; continue;;\n" +
+            "        -MF) next=f; continue;;\n" +
+            "        -MMD|-MD|-MP) depflags=\"$depflags $arg\"; continue;;\n" +
+            "        -c) continue;;\n" +
+            "    esac\n" +
+            "    set -- \"$@\" \"$arg\"\n" +
+            "done\n" +
+            "if [ -z \"$out\" ]; then\n" +
+            "    exec \"$@\"\n" +
+            "fi\n" +
+            "if [ -n \"$depflags\" ] && [ -z \"$depfile\" ]; then\n" +
+            "    depfile=${out%.*}.d\n" +
+            "fi\n" +
+            "#Arguments of the compile itself, put back after the arguments kept for preprocessing\n" +
+            "compile() {\n" +
+            "    if [ -n \"$depfile\" ]; then\n" +
+            "        \"$@\" -c -o \"$out\" $depflags -MF \"$depfile\"\n" +
+            "    else\n" +
+            "        \"$@\" -c -o \"$out\"\n" +
+            "    fi\n" +
+            "}\n" +
+            "\n" +
+            "#A source that fails to preprocess gets a key of its own, so its failed compile is never looked up\n" +
+            "key=$( {\n" +
+            "    \"$compiler\" --version 2> /dev/null\n" +
+            "    printf '%s\\n' \"$@\" \"$depflags\"\n" +
+            "    #A dependency file names its object, so such objects are only shared by builds with the same paths\n" +
+            "    [ -n \"$depfile\" ] && printf '%s\\n' \"$out\" \"$depfile\"\n" +
+            "    \"$@\" -E 2> /dev/null || echo \"$$ $(date)\"\n" +
+            "} | hash)\n" +
+            "entry=\"$CACHE_DIR/$key\"\n" +
+            "\n" +
+            "if [ -f \"$entry.o\" ] && { [ -z \"$depfile\" ] || [ -f \"$entry.d\" ]; }; then\n" +
+            "    cp \"$entry.o\" \"$out\" && { [ -z \"$depfile\" ] || cp \"$entry.d\" \"$depfile\"; } && {\n" +
+            "        touch \"$entry.o\"\n" +
+            "        echo >> \"$CACHE_DIR/hits\"\n" +
+            "        exit 0\n" +
+            "    }\n" +
+            "fi\n" +
+            "\n" +
+            "compile \"$@\" || exit $?\n" +
+            "echo >> \"$CACHE_DIR/misses\"\n" +
+            "#Stores under temporary names first, so no other build can take a half written object\n" +
+            "if [ -n \"$depfile\" ]; then\n" +
+            "    cp \"$depfile\" \"$entry.d.$$\" && mv -f \"$entry.d.$$\" \"$entry.d\"\n" +
+            "fi\n" +
+            "cp \"$out\" \"$entry.o.$$\" && mv -f \"$entry.o.$$\" \"$entry.o\"\n" +
+            "\n" +
+            "#Evicts the least recently used objects until the cache is back under three quarters of its size cap\n" +
+            "size=$(du -sk \"$CACHE_DIR\" | cut -f1)\n" +
+            "if [ \"$size\" -gt \"$MAX_KB\" ]; then\n" +
+            "    for old in $(ls -tr \"$CACHE_DIR\" | grep '\\.o$'); do\n" +
+            "        [ \"$size\" -le $((MAX_KB * 3 / 4)) ] && break\n" +
+            "        size=$((size - $(du -k \"$CACHE_DIR/$old\" | cut -f1)))\n" +
+            "        rm -f \"$CACHE_DIR/$old\" \"$CACHE_DIR/${old%.o}.d\"\n" +
+            "    done\n" +
+            "fi\n" +
+            "exit 0\n";
+
+    /**
+     * Writes the object cache wrapper to the destination, with the test fixture's cache folder and size cap;
+     * The OBJCACHE_DIR and OBJCACHE_MAX_KB environment variables override them when the build runs.
+     * @param fixture the test fixture containing the object cache settings
+     * @param destination the folder the build file is written to
+     * @return the written wrapper
+     * @throws IOException if the wrapper could not be written
+     */
+    public static File writeWrapper(TestFixture fixture, File destination) throws IOException {
+        File temp = new File(destination.getAbsolutePath() + "/" + wrapperName);
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
+            //Unix line endings whatever the platform, since the wrapper is run by sh
+            pw.print("#!/bin/sh\n#Object cache compile wrapper, generated by the C++ Unit Test Generator\n" +
+                    "#Usage: " + wrapperName + " <compiler> <arguments>... compiles through the cache\n" +
+                    "#       " + wrapperName + " --stats reports and resets the hit rate of the last build\n");
+            pw.print("CACHE_DIR=${OBJCACHE_DIR:-" + quote(fixture.getObjectCacheDirectory()) + "}\n");
+            pw.print("MAX_KB=${OBJCACHE_MAX_KB:-" + fixture.getObjectCacheSize() * 1024L + "}\n");
+            pw.print(script);
+        }
+        GeneratedFile.write(temp, text.toString());
+        temp.setExecutable(true);
+        return temp;
+    }
+
+    /*
+    Quotes a path for the shell, so that spaces or other special characters in it are kept as they are.
+     */
+    private static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,167 @@
+package sample;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes generated files on a few threads at once, so that slow disks and the reading of large CSV files overlap rather
+ * than queue up behind one another.
+ * At most 'concurrency' files are written at a time; Handing over another waits for one of them to finish, so a
+ * producer faster than the disk is held back rather than piling up work in memory.
+ * A file that can not be written does not stop the others; Every failure is kept, and await reports all of them at
+ * once, each with the name of the file it happened on.
+ *
+ * @author Axolotl Development Team
+ */
+public class ParallelWriter implements Closeable {
+
+    //Default number of files written at the same time
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Writes one generated file.
+     */
+    public interface Output {
+        void write() throws IOException;
+    }
+
+    /**
+     * Thrown by await when one or more files could not be written; Its message names each of them along with what went
+     * wrong, and each cause is added to it as a suppressed exception.
+     */
+    public static class WriteException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> outputs;
+
+        WriteException(List<String> outputs, List<Exception> causes, int attempted) {
+            super(message(outputs, causes, attempted), causes.get(0));
+            this.outputs = Collections.unmodifiableList(new ArrayList<>(outputs));
+            for (int i = 1; i < causes.size(); i++)
+                addSuppressed(causes.get(i));
+        }
+
+        /**
+         * @return The names of the files that could not be written, in the order they failed.
+         */
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        private static String message(List<String> outputs, List<Exception> causes, int attempted) {
+            StringBuilder message = new StringBuilder(outputs.size() + " of " + attempted +
+                    " generated files could not be written:");
+            for (int i = 0; i < outputs.size(); i++)
+                message.append("\n  ").append(outputs.get(i)).append(": ").append(causes.get(i));
+            return message.toString();
+        }
+    }
+
+    /*
+     * pool - The threads files are written on.
+     * permits - One for each of the 'concurrency' files that may be written at the same time.
+     * outputs, causes - The name of each file that could not be written since the last await, and why.
+     * attempted - The number of files handed over since the last await.
+     */
+    private final ExecutorService pool;
+    private final Semaphore permits;
+    private final int concurrency;
+    private final ArrayList<String> outputs;
+    private final ArrayList<Exception> causes;
+    private int attempted;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param concurrency The number of files written at the same time; values below 1 are treated as 1.
+     */
+    public ParallelWriter(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        pool = Executors.newFixedThreadPool(this.concurrency);
+        permits = new Semaphore(this.concurrency);
+        outputs = new ArrayList<>();
+        causes = new ArrayList<>();
+    }
+
+    /**
+     * Starts writing a file, first waiting for one of the files being written to finish if there are already as many
+     * as the concurrency allows.
+     *
+     * @param output The name of the file, used to report a failure.
+     * @param write  Writes the file.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
+     */
+    public void submit(String output, Output write) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Writing " + output + " was interrupted.");
+        }
+        synchronized (this) {
+            attempted++;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    write.write();
+                } catch (IOException | RuntimeException e) {
+                    failed(output, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            failed(output, e);
+        }
+    }
+
+    /**
+     * Waits for every file handed over so far to be written.
+     *
+     * @throws WriteException         If any of them could not be written; Every failure since the last await is in it.
+     * @throws InterruptedIOException If the thread was interrupted while waiting.
+     */
+    public void await() throws IOException {
+        try {
+            permits.acquire(concurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for the generated files to be written was interrupted.");
+        }
+        permits.release(concurrency);
+        synchronized (this) {
+            int count = attempted;
+            attempted = 0;
+            if (outputs.isEmpty())
+                return;
+            WriteException e = new WriteException(outputs, causes, count);
+            outputs.clear();
+            causes.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the writer's threads once the files handed over have been written; await should be called first to learn
+     * whether they were.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private synchronized void failed(String output, Exception cause) {
+        outputs.add(output);
+        causes.add(cause);
+    }
+}
@@ -0,0 +1,386 @@
+package sample;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of what the FileParser read from each source file, so that files which have not changed since
+ * the last run do not have to be parsed again.
+ * An entry is keyed by the file's absolute path and remembers the parser settings it was read with, and the file's
+ * size, last modified time and a hash of its contents as they were before it was read; a file whose size and time are
+ * unchanged is a hit right away, and a file that was only touched is a hit once its hash is found to be unchanged.
+ * A file read under other parser settings is a miss, whatever its contents.
+ * The cache is stored in a compact binary file and is kept under a size cap by evicting the least recently used entries.
+ * Safe to use from several parsing threads at once.
+ *
+ * @author Axolotl Development Team
+ */
+public class ParseCache {
+
+    //The program's logger
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    //Default location of the cache file, next to the serialized preferences
+    public static final String DEFAULT_CACHE_FILE = "parsecache.bin";
+    //Default cap on the estimated size of the cached entries
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    //Identifies a cache file, spelling "CUTP"
+    private static final int MAGIC = 0x43555450;
+    //Bumped whenever the layout of the cache file changes
+    private static final int VERSION = 2;
+    //Kinds of cached results
+    private static final byte NOTHING = 0, METHODS = 1, DEPENDENCE = 2;
+
+    /*
+     * cacheFile - Where the cache is stored between runs.
+     * maxBytes - The cap on the estimated size of the cached entries.
+     * entries - The cached entries mapped by the absolute path of their file.
+     * totalBytes - The estimated size of all cached entries.
+     * hits, misses - Counters of lookups since the cache was loaded.
+     * dirty - Whether the cache has changed since it was loaded or saved.
+     */
+    private final File cacheFile;
+    private final long maxBytes;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final AtomicLong totalBytes, hits, misses;
+    private volatile boolean dirty;
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param cacheFile The file the cache is saved to.
+     * @param maxBytes  The cap on the estimated size of the cached entries.
+     */
+    public ParseCache(File cacheFile, long maxBytes) {
+        this.cacheFile = cacheFile;
+        this.maxBytes = maxBytes;
+        entries = new ConcurrentHashMap<>();
+        totalBytes = new AtomicLong();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * Loads the cache stored in a file;
+     * A missing, outdated or damaged cache file simply gives an empty cache.
+     *
+     * @param cacheFile The file the cache was saved to.
+     * @param maxBytes  The cap on the estimated size of the cached entries.
+     * @return The loaded cache.
+     */
+    public static ParseCache load(File cacheFile, long maxBytes) {
+        ParseCache cache = new ParseCache(cacheFile, maxBytes);
+        if (!cacheFile.exists())
+            return cache;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Parse cache is from another version, starting with an empty cache.");
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = Entry.read(in);
+                cache.entries.put(entry.path, entry);
+                cache.totalBytes.addAndGet(entry.bytes);
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Parse cache could not be read, starting with an empty cache.\n" + e.toString());
+            cache.entries.clear();
+            cache.totalBytes.set(0);
+        }
+        cache.evict();
+        return cache;
+    }
+
+    /**
+     * Looks up what was last read from a file.
+     *
+     * @param stamp   The file, as it is before it is read.
+     * @param options The parser settings the file is read with.
+     * @return A copy of the cached result, or null if the file is not cached, has changed since it was cached or was
+     * cached under other settings.
+     * @throws IOException If the file could not be read to compare its hash.
+     */
+    public FileParser.ParseResult get(Stamp stamp, int options) throws IOException {
+        Entry entry = entries.get(stamp.path);
+        if (entry != null && entry.options == options && entry.size == stamp.size) {
+            if (entry.modified != stamp.modified) {
+                // The file was touched, but its contents may still be the same
+                if (!Arrays.equals(entry.hash, stamp.hash())) {
+                    misses.incrementAndGet();
+                    return null;
+                }
+                entry.modified = stamp.modified;
+                dirty = true;
+            }
+            entry.lastUsed = System.currentTimeMillis();
+            hits.incrementAndGet();
+            return entry.copyResult();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores what was read from a file, replacing anything cached for it before.
+     *
+     * @param stamp   The file, as it was before it was read; A file edited while being read is then cached as it was,
+     *                and is read again the next time it is looked up.
+     * @param options The parser settings the file was read with.
+     * @param result  What was read from the file.
+     * @throws IOException If the file could not be read to hash it.
+     */
+    public void put(Stamp stamp, int options, FileParser.ParseResult result) throws IOException {
+        Entry entry = new Entry(stamp.path, options, stamp.size, stamp.modified, stamp.hash(),
+                System.currentTimeMillis(), result);
+        Entry old = entries.put(entry.path, entry);
+        totalBytes.addAndGet(entry.bytes - (old == null ? 0 : old.bytes));
+        dirty = true;
+        if (totalBytes.get() > maxBytes)
+            evict();
+    }
+
+    /**
+     * Saves the cache to its file if it has changed;
+     * The cache is written to a temporary file first so a failed save never leaves a half written cache behind.
+     *
+     * @throws IOException If the cache could not be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("parsecache", ".tmp", parent);
+        // Cleared before the snapshot, so an entry added while saving marks the cache to be saved again
+        dirty = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                ArrayList<Entry> snapshot = new ArrayList<>(entries.values());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Entry entry : snapshot)
+                    entry.write(out);
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void clear() {
+        entries.clear();
+        totalBytes.set(0);
+        dirty = true;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns in the format of Parse cache: hits hits, misses misses, entries entries
+     *
+     * @return A string representation of the cache's counters.
+     */
+    public String toString() {
+        return "Parse cache: " + hits.get() + " hits, " + misses.get() + " misses, " + entries.size() + " entries";
+    }
+
+    /*
+    Drops the least recently used entries until the cache is at three quarters of its cap;
+    Going well under the cap means a full cache does not have to sort its entries on every new file.
+     */
+    private synchronized void evict() {
+        if (totalBytes.get() <= maxBytes)
+            return;
+        ArrayList<Entry> byAge = new ArrayList<>(entries.values());
+        byAge.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (int i = 0; i < byAge.size() && totalBytes.get() > maxBytes / 4 * 3; i++) {
+            if (entries.remove(byAge.get(i).path, byAge.get(i)))
+                totalBytes.addAndGet(-byAge.get(i).bytes);
+        }
+        dirty = true;
+    }
+
+    /**
+     * A source file's size and last modified time, and the hash of its contents once it is needed, taken before the file
+     * is read so that its result is cached with the state it was read from;
+     * The hash is only read the first time it is asked for, so a file whose size and time are unchanged is never hashed,
+     * and a touched file is hashed once whether or not it is then read again.
+     */
+    public static class Stamp {
+        private final File file;
+        private final String path;
+        private final long size, modified;
+        private byte[] hash;
+
+        /**
+         * Takes the size and last modified time of a file.
+         *
+         * @param file The source file.
+         */
+        public Stamp(File file) {
+            this.file = file;
+            path = file.getAbsolutePath();
+            size = file.length();
+            modified = file.lastModified();
+        }
+
+        /**
+         * @return The hash of the file's contents, read the first time it is asked for.
+         * @throws IOException If the file could not be read.
+         */
+        public byte[] hash() throws IOException {
+            if (hash == null)
+                hash = ContentHash.of(file);
+            return hash;
+        }
+    }
+
+    /**
+     * One cached file;
+     * The methods are stored as read and handed out as copies, since the GUI marks them for testing and attaches CSV
+     * files to them.
+     */
+    private static class Entry {
+        final String path;
+        final int options;
+        final long size;
+        final byte[] hash;
+        final FileParser.ParseResult result;
+        final int bytes;
+        volatile long modified, lastUsed;
+
+        Entry(String path, int options, long size, long modified, byte[] hash, long lastUsed,
+              FileParser.ParseResult result) {
+            this.path = path;
+            this.options = options;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.lastUsed = lastUsed;
+            this.result = result;
+            bytes = estimateBytes();
+        }
+
+        FileParser.ParseResult copyResult() {
+            if (result.methods == null)
+                return result;
+            Method[] copies = new Method[result.methods.length];
+            for (int i = 0; i < copies.length; i++) {
+                Method m = result.methods[i];
+                copies[i] = new Method(m.getClassName(), m.getReturnType(), m.getMethodName(), m.getParamTypes());
+            }
+            return new FileParser.ParseResult(copies, result.dependence);
+        }
+
+        /*
+        Roughly how much memory and disk the entry takes, counting two bytes a character and a fixed overhead.
+         */
+        private int estimateBytes() {
+            int estimate = 96 + path.length() * 2 + hash.length;
+            if (result.methods != null)
+                for (Method m : result.methods) {
+                    estimate += 48 + (m.getReturnType().length() + m.getMethodName().length()) * 2;
+                    for (String param : m.getParamTypes())
+                        estimate += 16 + param.length() * 2;
+                }
+            if (result.dependence != null) {
+                for (String dep : result.dependence.getDependencies())
+                    estimate += 16 + dep.length() * 2;
+                for (String lib : result.dependence.getLibraries())
+                    estimate += 16 + lib.length() * 2;
+            }
+            return estimate;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeInt(options);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeLong(lastUsed);
+            out.writeByte(hash.length);
+            out.write(hash);
+            if (result.methods != null) {
+                out.writeByte(METHODS);
+                out.writeInt(result.methods.length);
+                for (Method m : result.methods) {
+                    out.writeUTF(m.getClassName());
+                    out.writeUTF(m.getReturnType());
+                    out.writeUTF(m.getMethodName());
+                    writeStrings(out, m.getParamTypes());
+                }
+            } else if (result.dependence != null) {
+                out.writeByte(DEPENDENCE);
+                out.writeUTF(result.dependence.getClassName());
+                writeStrings(out, result.dependence.getDependencies());
+                writeStrings(out, result.dependence.getLibraries());
+            } else
+                out.writeByte(NOTHING);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            String path = in.readUTF();
+            int options = in.readInt();
+            long size = in.readLong(), modified = in.readLong(), lastUsed = in.readLong();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            FileParser.ParseResult result;
+            switch (in.readByte()) {
+                case METHODS:
+                    Method[] methods = new Method[in.readInt()];
+                    for (int i = 0; i < methods.length; i++)
+                        methods[i] = new Method(in.readUTF(), in.readUTF(), in.readUTF(), readStrings(in));
+                    result = new FileParser.ParseResult(methods, null);
+                    break;
+                case DEPENDENCE:
+                    result = new FileParser.ParseResult(null,
+                            new Dependence(in.readUTF(), readStrings(in), readStrings(in)));
+                    break;
+                case NOTHING:
+                    result = new FileParser.ParseResult(null, null);
+                    break;
+                default:
+                    throw new IOException("Unknown entry in parse cache.");
+            }
+            return new Entry(path, options, size, modified, hash, lastUsed, result);
+        }
+
+        private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+            out.writeShort(strings.length);
+            for (String s : strings)
+                out.writeUTF(s);
+        }
+
+        private static String[] readStrings(DataInputStream in) throws IOException {
+            String[] strings = new String[in.readUnsignedShort()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = in.readUTF();
+            return strings;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package sample;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -11,6 +12,11 @@ import java.util.HashMap;
  * @author Axolotl Development Team
  */
 public class TestFixture implements java.io.Serializable {
+    /*
+    The build systems a build file can be generated for
+     */
+    public enum BuildSystem { MAKE, NINJA }
+
     /*
     String to denote the start of a file representing a test fixture
      */
@@ -33,6 +39,73 @@ public class TestFixture implements java.io.Serializable {
      */
     private String finalExecutableName;
     /*
+    Build system to generate the build file for. Default to make
+     */
+    private BuildSystem buildSystem;
+    /*
+    Whether the compiler generates the header dependencies of each object (-MMD -MP) for the makefile to include,
+    rather than the makefile listing only the headers found by the FileParser. Default to false
+     */
+    private boolean automaticDependencies;
+    /*
+    Folder, relative to the makefile, that object and dependency files are built into when automatic dependencies are
+    used. Default to "build"
+     */
+    private String buildDirectory;
+    /*
+    Whether the generated unit tests share a precompiled header of the standard library and common project headers,
+    built once by the build file. Default to false
+     */
+    private boolean precompiledHeader;
+    /*
+    Number of batch files the unit tests are grouped into for a unity build, each compiled as a single translation unit
+    that includes the test files of its classes. Default to 0, compiling every unit test on its own
+     */
+    private int unityBatches;
+    /*
+    Number of lines a unit test may grow to before it is split into shards compiled apart, run by a small driver.
+    Default to 0, never splitting a test
+     */
+    private int maxTestLines;
+    /*
+    Whether the project's objects are archived once into a static library that every unit test executable links
+    against, rather than each test linking the objects of its class. Default to false
+     */
+    private boolean staticLibrary;
+    /*
+    Whether the rows of a method's CSV file are written as a table walked by a single loop, rather than as a statement
+    per row. Default to false
+     */
+    private boolean tableDrivenCsv;
+    /*
+    Whether the rows of a method's CSV file are converted into a binary data file the unit test reads at run time, so
+    that changing them does not change the test. Default to false
+     */
+    private boolean runtimeCsvData;
+    /*
+    Number of threads a large CSV file is read with, each tokenizing its own part of the file. Default to 1, reading
+    every CSV file on the thread writing its test
+     */
+    private int csvThreads;
+    /*
+    Number of generated files, such as the unit tests, the build file and this test fixture, written at the same time.
+    Default to ParallelWriter.DEFAULT_CONCURRENCY
+     */
+    private int writeThreads;
+    /*
+    Whether objects are compiled through a wrapper that reuses them from a local object cache when the compiler, flags
+    and preprocessed source are unchanged. Default to false
+     */
+    private boolean objectCache;
+    /*
+    Folder, relative to the build file, the object cache is kept in. Default to ".objcache"
+     */
+    private String objectCacheDirectory;
+    /*
+    Size in megabytes the object cache may grow to before its least recently used objects are evicted. Default to 512
+     */
+    private int objectCacheSize;
+    /*
     Default list of methods to test
      */
     private ArrayList<Method> testSuite;
@@ -63,7 +136,14 @@ public class TestFixture implements java.io.Serializable {
         compiler = "g++";
         flags = "-testFLAG!";
         finalExecutableName = "executable";
+        buildSystem = BuildSystem.MAKE;
+        automaticDependencies = false;
+        buildDirectory = "build";
         testSuite = new ArrayList<Method>();
+        objectCacheDirectory = ".objcache";
+        objectCacheSize = 512;
+        csvThreads = 1;
+        writeThreads = ParallelWriter.DEFAULT_CONCURRENCY;
         stringDefault = "Axolotl";
         characterDefault = 'X';
         integerDefault = 36;
@@ -77,6 +157,12 @@ public class TestFixture implements java.io.Serializable {
         this.flags = flags;
         this.finalExecutableName = finalExecutableName;
         this.testSuite = testSuite;
+        buildSystem = BuildSystem.MAKE;
+        buildDirectory = "build";
+        objectCacheDirectory = ".objcache";
+        objectCacheSize = 512;
+        csvThreads = 1;
+        writeThreads = ParallelWriter.DEFAULT_CONCURRENCY;
     }
 
 
@@ -144,6 +230,231 @@ public class TestFixture implements java.io.Serializable {
         this.finalExecutableName = finalExecutableName;
     }
 
+    /*
+    Getter for the build system the build file is generated for
+    @returns the build system
+     */
+    public BuildSystem getBuildSystem() {
+        return buildSystem;
+    }
+
+    /*
+    Setter for the build system the build file is generated for
+    @param buildSystem the new build system
+     */
+    public void setBuildSystem(BuildSystem buildSystem) {
+        this.buildSystem = buildSystem;
+    }
+
+    /*
+    Getter for whether the compiler generates header dependencies for the makefile
+    @returns true if objects are compiled with -MMD -MP into the build directory
+     */
+    public boolean getAutomaticDependencies() {
+        return automaticDependencies;
+    }
+
+    /*
+    Setter for whether the compiler generates header dependencies for the makefile
+    @param automaticDependencies true to compile objects with -MMD -MP into the build directory
+     */
+    public void setAutomaticDependencies(boolean automaticDependencies) {
+        this.automaticDependencies = automaticDependencies;
+    }
+
+    /*
+    Getter for the folder object and dependency files are built into
+    @returns the build folder, relative to the makefile
+     */
+    public String getBuildDirectory() {
+        return buildDirectory;
+    }
+
+    /*
+    Setter for the folder object and dependency files are built into
+    @param buildDirectory the new build folder, relative to the makefile
+     */
+    public void setBuildDirectory(String buildDirectory) {
+        this.buildDirectory = buildDirectory;
+    }
+
+    /*
+    Getter for whether the generated unit tests share a precompiled header
+    @returns true if a precompiled header is generated and included by every unit test
+     */
+    public boolean getPrecompiledHeader() {
+        return precompiledHeader;
+    }
+
+    /*
+    Setter for whether the generated unit tests share a precompiled header
+    @param precompiledHeader true to generate a precompiled header and include it in every unit test
+     */
+    public void setPrecompiledHeader(boolean precompiledHeader) {
+        this.precompiledHeader = precompiledHeader;
+    }
+
+    /*
+    Getter for the number of unity build batches
+    @returns the number of batch files the unit tests are grouped into, or 0 if unity builds are off
+     */
+    public int getUnityBatches() {
+        return unityBatches;
+    }
+
+    /*
+    Setter for the number of unity build batches; Fewer batches parse shared headers fewer times, while more batches
+    can be compiled in parallel
+    @param unityBatches the number of batch files to group the unit tests into, or 0 to turn unity builds off
+     */
+    public void setUnityBatches(int unityBatches) {
+        this.unityBatches = Math.max(0, unityBatches);
+    }
+
+    /*
+    Getter for the length unit tests are split at
+    @returns the number of lines a unit test may grow to before it is split into shards, or 0 if tests are not split
+     */
+    public int getMaxTestLines() {
+        return maxTestLines;
+    }
+
+    /*
+    Setter for the length unit tests are split at; Shards compile in parallel, but each parses the class's headers again
+    @param maxTestLines the number of lines a unit test may grow to before it is split, or 0 to never split tests
+     */
+    public void setMaxTestLines(int maxTestLines) {
+        this.maxTestLines = Math.max(0, maxTestLines);
+    }
+
+    /*
+    Getter for whether the unit tests link against a static library of the project
+    @returns true if the project's objects are archived for the unit tests to link against
+     */
+    public boolean getStaticLibrary() {
+        return staticLibrary;
+    }
+
+    /*
+    Setter for whether the unit tests link against a static library of the project
+    @param staticLibrary true to archive the project's objects once and link every unit test against the archive
+     */
+    public void setStaticLibrary(boolean staticLibrary) {
+        this.staticLibrary = staticLibrary;
+    }
+
+    /*
+    Getter for whether CSV rows are written as tables
+    @returns true if the tests of a method with a CSV file loop over a table of its rows
+     */
+    public boolean getTableDrivenCsv() {
+        return tableDrivenCsv;
+    }
+
+    /*
+    Setter for whether CSV rows are written as tables
+    @param tableDrivenCsv true to write the rows of each CSV file as a table walked by a single loop
+     */
+    public void setTableDrivenCsv(boolean tableDrivenCsv) {
+        this.tableDrivenCsv = tableDrivenCsv;
+    }
+
+    /*
+    Getter for whether CSV rows are read from data files at run time
+    @returns true if the tests of a method with a CSV file read its rows from a binary data file
+     */
+    public boolean getRuntimeCsvData() {
+        return runtimeCsvData;
+    }
+
+    /*
+    Setter for whether CSV rows are read from data files at run time
+    @param runtimeCsvData true to convert each CSV file into a binary data file read by the unit test when it runs
+     */
+    public void setRuntimeCsvData(boolean runtimeCsvData) {
+        this.runtimeCsvData = runtimeCsvData;
+    }
+
+    /*
+    Getter for the number of threads large CSV files are read with
+    @returns the number of parts of a large CSV file tokenized at the same time, or 1 if CSV files are read serially
+     */
+    public int getCsvThreads() {
+        return csvThreads;
+    }
+
+    /*
+    Setter for the number of threads large CSV files are read with; Only files of several megabytes are split up
+    @param csvThreads the number of parts of a large CSV file tokenized at the same time, or 1 to read serially
+     */
+    public void setCsvThreads(int csvThreads) {
+        this.csvThreads = Math.max(1, csvThreads);
+    }
+
+    /*
+    Getter for the number of generated files written at the same time
+    @returns the number of unit tests and other generated files written at once
+     */
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    /*
+    Setter for the number of generated files written at the same time
+    @param writeThreads the number of unit tests and other generated files written at once, or 1 to write one by one
+     */
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = Math.max(1, writeThreads);
+    }
+
+    /*
+    Getter for whether objects are compiled through the object cache
+    @returns true if the build file compiles through the object cache wrapper
+     */
+    public boolean getObjectCache() {
+        return objectCache;
+    }
+
+    /*
+    Setter for whether objects are compiled through the object cache
+    @param objectCache true to write the object cache wrapper and compile every object through it
+     */
+    public void setObjectCache(boolean objectCache) {
+        this.objectCache = objectCache;
+    }
+
+    /*
+    Getter for the folder the object cache is kept in
+    @returns the object cache folder, relative to the build file
+     */
+    public String getObjectCacheDirectory() {
+        return objectCacheDirectory;
+    }
+
+    /*
+    Setter for the folder the object cache is kept in; Several projects may share one cache
+    @param objectCacheDirectory the new object cache folder, relative to the build file or absolute
+     */
+    public void setObjectCacheDirectory(String objectCacheDirectory) {
+        this.objectCacheDirectory = objectCacheDirectory;
+    }
+
+    /*
+    Getter for the size cap of the object cache
+    @returns the size in megabytes the object cache may grow to
+     */
+    public int getObjectCacheSize() {
+        return objectCacheSize;
+    }
+
+    /*
+    Setter for the size cap of the object cache
+    @param objectCacheSize the size in megabytes the object cache may grow to, at least 1
+     */
+    public void setObjectCacheSize(int objectCacheSize) {
+        this.objectCacheSize = Math.max(1, objectCacheSize);
+    }
+
     /*
     Getter for the input files to be used when generating tests
     @returns the input files to be used when generating tests
@@ -256,10 +567,35 @@ public class TestFixture implements java.io.Serializable {
         toReturn.append("Default test value for ints: " + integerDefault + "\n");
         toReturn.append("Default test value for doubles: " + doubleDefault + "\n");
         toReturn.append("Default test value for bools: " + booleanDefault + "\n");
-        toReturn.append("Flags: " + flags);
+        toReturn.append("Flags: " + flags + "\n");
+        toReturn.append("Build system: " + buildSystem.name().toLowerCase() + "\n");
+        toReturn.append("Automatic header dependencies: " + automaticDependencies +
+                (automaticDependencies ? " (built into " + buildDirectory + ")" : "") + "\n");
+        toReturn.append("Precompiled header: " + precompiledHeader + "\n");
+        toReturn.append("Unity build batches: " + unityBatches + "\n");
+        toReturn.append("Maximum unit test lines: " + maxTestLines + "\n");
+        toReturn.append("Static library for unit tests: " + staticLibrary + "\n");
+        toReturn.append("Table-driven CSV tests: " + tableDrivenCsv + "\n");
+        toReturn.append("Run time CSV data: " + runtimeCsvData + "\n");
+        toReturn.append("CSV reading threads: " + csvThreads + "\n");
+        toReturn.append("Object cache: " + objectCache +
+                (objectCache ? " (" + objectCacheDirectory + ", " + objectCacheSize + " MB)" : ""));
         return toReturn.toString();
     }
 
+    /*
+    Writes the .h representation of this test fixture, named after the fixture, to the destination folder
+    @param destination the folder the test fixture is to be written to
+    @returns the written file
+    @throws IOException if the file could not be written
+     */
+    public File writeHeaderFile(File destination) throws IOException {
+        File tf = new File(destination.getAbsolutePath() + "/" + fixtureName + ".h");
+        //Left alone when it has not changed, so the tests including it are not compiled again
+        GeneratedFile.write(tf, toString());
+        return tf;
+    }
+
     /*
     Getter for the header for .h representations of test fixtures
     @returns the header for .h representations of test fixtures
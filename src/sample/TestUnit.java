@@ -0,0 +1,65 @@
+package sample;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores what the build file needs to know about one unit test executable for easy data transfer: the sources it is
+ * compiled from and the classes it tests.
+ * A unit test is usually one source testing one class, but an oversized test is split into shards compiled apart, and a
+ * unity build batch tests several classes from a single source.
+ *
+ * @author Axolotl Development Team
+ */
+public class TestUnit {
+
+    /*
+     * name - The name of the executable, which is also the name of the source holding its main.
+     * sources - The sources compiled into the executable, without their file type.
+     * testedClasses - The names of the classes the executable tests.
+     * lines - The number of lines written for the test, used to size unity build batches.
+     */
+    private final String name;
+    private final ArrayList<String> sources, testedClasses;
+    private final int lines;
+
+    /**
+     * Creates a new TestUnit object.
+     *
+     * @param name          The name of the executable and of the source holding its main.
+     * @param sources       The sources compiled into the executable, without their file type.
+     * @param testedClasses The names of the classes the executable tests.
+     * @param lines         The number of lines written for the test.
+     */
+    TestUnit(String name, List<String> sources, List<String> testedClasses, int lines) {
+        this.name = name;
+        this.sources = new ArrayList<>(sources);
+        this.testedClasses = new ArrayList<>(testedClasses);
+        this.lines = lines;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ArrayList<String> getSources() {
+        return new ArrayList<>(sources);
+    }
+
+    public ArrayList<String> getTestedClasses() {
+        return new ArrayList<>(testedClasses);
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns in the format of name: source1 source2... (testedClass1 testedClass2...)
+     *
+     * @return A string representation of this unit's fields.
+     */
+    public String toString() {
+        return name + ": " + String.join(" ", sources) + " (" + String.join(" ", testedClasses) + ")";
+    }
+}
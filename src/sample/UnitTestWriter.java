@@ -2,17 +2,28 @@ package sample;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
 
 /**
  * Class meant to be used by the FileParser class. Purpose of use is to generate a set of unit tests, one per .cpp file,
- * for a C++ project
+ * for a C++ project; Each writer writes to its own destination, so several projects can be generated at once
  * @author Axolotl Development Team
  */
 public class UnitTestWriter {
 
+    //The program's logger
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
     /*
         All unit tests need some sort of header to differentiate them from other .cpp files so unit tests
         aren't generated for other unit tests.
@@ -20,23 +31,99 @@ public class UnitTestWriter {
          */
     public static final String unitTestHeader = "//Unit Test File";
 
+    /*
+    Name of the header that is precompiled once and included first by every unit test when the test fixture asks for a
+    precompiled header
+     */
+    public static final String precompiledHeader = "TestPCH.h";
+
+    /*
+    Prefix of the batch files a unity build compiles in place of the individual unit tests, numbered from 0
+     */
+    public static final String unityBatchPrefix = "UnityTEST_";
+
+    /*
+    Name of the header that reads test data files at run time, and the magic number and version heading each data file
+     */
+    public static final String testDataHeader = "TestData.h";
+    private static final byte[] testDataMagic = {'C', 'U', 'T', 'D'};
+    private static final int testDataVersion = 1;
+
+    /*
+    Standard library headers that may go into the precompiled header when a parsed class includes them;
+    Other library names can not be trusted, since the FileParser strips .h from them.
+     */
+    private static final HashSet<String> standardHeaders = new HashSet<>(Arrays.asList(
+            "algorithm", "array", "bitset", "cassert", "cctype", "chrono", "cmath", "cstddef", "cstdint", "cstdio",
+            "cstdlib", "cstring", "ctime", "deque", "fstream", "functional", "iomanip", "iostream", "istream",
+            "iterator", "limits", "list", "map", "memory", "numeric", "ostream", "queue", "set", "sstream", "stack",
+            "stdexcept", "string", "tuple", "unordered_map", "unordered_set", "utility", "vector"));
+
     /*
     The absolute pathname of the folder the tests are to be written to
      */
-    public static File destination;
+    private final File destination;
+
+    /*
+    The cache CSV files are read through, or null to read every CSV file from disk
+     */
+    private final CsvCache csvCache;
+
+    /*
+    Thrown when the rows of a CSV file can not be converted into a data file for their method's parameter types, so the
+    method is tested from the CSV file instead
+     */
+    private static class UnconvertibleDataException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnconvertibleDataException(String message) {
+            super(message);
+        }
+    }
 
     public UnitTestWriter(File destination){
+        this(destination, null);
+    }
+
+    /*
+    Creates a writer of unit tests into a destination folder; A writer never changes once made, so one writer may write
+    tests on many threads, and writers for different destinations never interfere with each other.
+    @param destination the folder the tests are to be written to
+    @param csvCache the cache CSV files are read through, which may be shared with other writers, or null
+     */
+    public UnitTestWriter(File destination, CsvCache csvCache){
         this.destination = destination;
+        this.csvCache = csvCache;
     }
 
     /*
     Method to take a set of Method objects and generate a set of unit tests for them.
     Separates out which method belongs to which file manually, then uses a subroutine to actually write
     the individual test files.
+    The test files are written on the test fixture's number of write threads; a class whose test can not be written
+    does not stop the others, and every failure is reported together once all have been tried.
+    @param methods an ArrayList of methods to be tested
+    @param fixture TestFixture data structure containing information on how the tests are to be built
+    @returns the unit test executables to be built from the written tests, in name order
+    @throws ParallelWriter.WriteException naming every test that could not be written
+     */
+    public ArrayList<TestUnit> writeUnitTests(ArrayList<Method> methods, TestFixture fixture) throws IOException{
+        try (ParallelWriter writer = new ParallelWriter(fixture.getWriteThreads())) {
+            return writeUnitTests(methods, fixture, writer);
+        }
+    }
+
+    /*
+    Method to take a set of Method objects and generate a set of unit tests for them on a writer that may also be
+    writing other files; Returns once every file handed to the writer so far has been written.
     @param methods an ArrayList of methods to be tested
     @param fixture TestFixture data structure containing information on how the tests are to be built
+    @param writer the writer the test files are written on
+    @returns the unit test executables to be built from the written tests, in name order
+    @throws ParallelWriter.WriteException naming every file handed to the writer that could not be written
      */
-    public static void writeUnitTests(ArrayList<Method> methods, TestFixture fixture) throws IOException{
+    public ArrayList<TestUnit> writeUnitTests(ArrayList<Method> methods, TestFixture fixture,
+                                                     ParallelWriter writer) throws IOException{
         //Holds each class name mapped to an arraylist of its methods
         HashMap<String, ArrayList<Method>> methodsByClass = new HashMap <String, ArrayList<Method>>();
 
@@ -47,31 +134,48 @@ public class UnitTestWriter {
             methodsByClass.get(methods.get(i).getClassName()).add(methods.get(i));
         }
 
-        Iterator it = methodsByClass.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry<String, ArrayList<Method>> entry = (Map.Entry<String, ArrayList<Method>>) it.next();
-            writeSingleTest(entry.getValue(), fixture);
+        List<TestUnit> written = Collections.synchronizedList(new ArrayList<>());
+        for(Map.Entry<String, ArrayList<Method>> entry : methodsByClass.entrySet()){
+            writer.submit(entry.getKey() + "TEST.cpp", () -> written.add(writeSingleTest(entry.getValue(), fixture)));
         }
+        writer.await();
+        return writeTestUnits(sortByName(written), fixture);
+    }
+
+    /*
+    Method to put the unit tests written on several threads back into a fixed order, so the build file listing them
+    only changes when the tests do
+    @param written the unit tests written for each class, in any order
+    @returns the unit tests in name order
+     */
+    static ArrayList<TestUnit> sortByName(Collection<TestUnit> written) {
+        ArrayList<TestUnit> sorted = new ArrayList<>(written);
+        sorted.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return sorted;
     }
 
     /*
-    Subroutine to write each individual test file given the methods to be tested and certain parameters about the test
+    Subroutine to write each individual test file given the methods to be tested and certain parameters about the test;
+    The test calls are written out as they are printed, and a test longer than the test fixture allows is split into
+    shards, each compiled on its own, and a driver calling each shard from main.
     @param methods an ArrayList of methods to be tested
     @param fixture TestFixture data structure containing information on how the tests are to be built
-    @throws IOException
+    @returns the unit test executable to be built from the written files
+    @throws IOException if a CSV file could not be read or a test file could not be written
      */
-    private static void writeSingleTest(ArrayList<Method> methods, TestFixture fixture) throws IOException {
-        File temp = new File(destination.getAbsolutePath() + "/" + methods.get(0).getClassName() + "TEST.cpp");
-        temp.createNewFile();
-        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(temp)))) {
-
-            //print indication of unit test
-            pw.println(unitTestHeader);
-            //#include "classname.h"
-            pw.println("#include \"" + methods.get(0).getClassName() + ".h\"");
-            //#include <iostream>
-            //int main{
-            pw.println("#include <iostream>\n\nint main(){\n");
+    TestUnit writeSingleTest(ArrayList<Method> methods, TestFixture fixture) throws IOException {
+        String className = methods.get(0).getClassName();
+        //In a unity build the test is included into a batch alongside others, so its main is put in its own namespace
+        boolean unity = fixture.getUnityBatches() > 0;
+        //With run time test data on, the tests of a method with a CSV file read its rows from a data file
+        boolean testData = false;
+        if(fixture.getRuntimeCsvData())
+            for(Method method : methods)
+                testData |= method.getWillBeTested() && method.getCsvFile() != null;
+        //The data files written for this test, so those an earlier run wrote and this one did not can be deleted
+        HashSet<String> dataFiles = new HashSet<>();
+        TestBody body = new TestBody(className, fixture, testData);
+        try (PrintWriter pw = new PrintWriter(body)) {
 
             for(int i = 0; i<methods.size(); i++){
                 //Don't test methods that are not to be tested.
@@ -123,38 +227,781 @@ public class UnitTestWriter {
                     }
                     //if CSV file is attached to current method, test it with specified parameters
                     else {
-                        String[][] paramSets = FileParser.parseCSVFile(methods.get(i).getCsvFile());
-                        for(int j = 0; j<paramSets.length; j++){
-                            pw.print("\tcout << " + methods.get(i).getMethodName() + "(");
-                            for(int k = 0; k < paramSets[j].length; k++){
-                                pw.print(paramSets[j][k]);
-                                //Don't print a comma after the last param.
-                                if(k != methods.get(i).getParamTypes().length -1){
-                                    pw.print(", ");
+                        //with run time test data on, the rows are read from a data file, so the test does not change
+                        //when they do; with table-driven tests on, they become constant data walked by a single loop
+                        if(!(testData && writeCsvData(pw, methods.get(i), fixture, dataFiles)) &&
+                                !(fixture.getTableDrivenCsv() && writeCsvTable(pw, methods.get(i), fixture))){
+                            //the rows are read one at a time, so CSV files of any size can be tested
+                            try (CsvReader rows = openCsv(methods.get(i).getCsvFile(), fixture)) {
+                                for(String[] paramSet = rows.readRow(); paramSet != null; paramSet = rows.readRow()){
+                                    pw.print("\tcout << " + methods.get(i).getMethodName() + "(");
+                                    for(int k = 0; k < paramSet.length; k++){
+                                        pw.print(paramSet[k]);
+                                        //Don't print a comma after the last param.
+                                        if(k != methods.get(i).getParamTypes().length -1){
+                                            pw.print(", ");
+                                        }
+                                    }
+                                    pw.println(");");
                                 }
                             }
-                            pw.println(");");
                         }
                     }
                     pw.println();
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            body.discard();
+            throw e;
+        }
+        deleteStaleData(className, dataFiles);
+        try {
+            return body.finish();
+        } finally {
+            body.discard();
+        }
+    }
 
-            // return 0;
-            // }
-            pw.println("\treturn 0;\n}");
+    /*
+    Subroutine to print the lines heading every test file
+    @param pw the writer of the test file
+    @param className the class being tested
+    @param fixture TestFixture data structure containing information on how the tests are to be built
+    @param testData whether the test reads data files
+     */
+    private static void printIncludes(PrintWriter pw, String className, TestFixture fixture, boolean testData) {
+        //print indication of unit test
+        pw.println(unitTestHeader);
+        //#include "TestPCH.h", which has to come before anything else for the compiler to use its precompiled form
+        if(fixture.getPrecompiledHeader())
+            pw.println("#include \"" + precompiledHeader + "\"");
+        //#include "classname.h"
+        pw.println("#include \"" + className + ".h\"");
+        //#include <iostream>
+        if(testData)
+            pw.println("#include \"" + testDataHeader + "\"");
+        pw.println("#include <iostream>\n");
+    }
+
+    /*
+    Receives the test calls of a class as they are printed and writes them out a line at a time: straight into the test
+    file when the test is never split, and otherwise into shards of about the test fixture's maximum length, each
+    holding a function that runs its share of the calls. Only the lines of a test short enough to stay in one file are
+    held, so a test of any length is written without being kept in memory.
+    A shard is only ever ended between two statements, never inside the braces of a table or data file loop, and the
+    blank lines following a statement stay with it; Blank lines at the very end of the test are dropped.
+     */
+    private class TestBody extends Writer {
+
+        /*
+         * className - The class being tested.
+         * fixture - The test fixture the test is written with.
+         * testData - Whether the test reads data files.
+         * splittable - Whether the test is split once it is too long; A unity build already puts tests together into
+         * larger files, so its tests are never split.
+         * threshold - The number of lines of test calls a test may hold before it is split, leaving about 8 lines for
+         * the header, includes and main.
+         * limit - The number of lines a shard is filled to before it is ended at the next statement.
+         */
+        private final String className;
+        private final TestFixture fixture;
+        private final boolean testData, splittable;
+        private final int threshold, limit;
+        //The line being printed, and the blank lines waiting for a statement to follow them
+        private final StringBuilder line = new StringBuilder();
+        private int blanks;
+        //The lines of test calls written so far, and the depth of the braces the last of them left open
+        private int lines, depth;
+        //The lines of a test not split so far, or null once it is
+        private ArrayList<String> held = new ArrayList<>();
+        //The shards written so far, and the lines written to the last one
+        private final ArrayList<String> shards = new ArrayList<>();
+        private int shardLines;
+        //The file being written to and its temporary file, or null between shards
+        private PrintWriter out;
+        private File outFile, outTemp;
+        //The first failure to write, reported by finish, since the PrintWriter printing the calls hides it
+        private IOException failure;
+
+        TestBody(String className, TestFixture fixture, boolean testData) throws IOException {
+            this.className = className;
+            this.fixture = fixture;
+            this.testData = testData;
+            splittable = fixture.getUnityBatches() == 0 && fixture.getMaxTestLines() > 0;
+            threshold = fixture.getMaxTestLines() - 8;
+            limit = Math.max(1, threshold);
+            if(!splittable){
+                held = null;
+                open(className + "TEST");
+                printMain();
+            }
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if(failure != null)
+                throw failure;
+            try {
+                for(int i = offset; i < offset + length; i++){
+                    if(buffer[i] != '\n'){
+                        line.append(buffer[i]);
+                        continue;
+                    }
+                    //println ends lines with the platform's line separator, so \r\n on Windows
+                    if(line.length() > 0 && line.charAt(line.length() - 1) == '\r')
+                        line.setLength(line.length() - 1);
+                    take(line.toString());
+                    line.setLength(0);
+                }
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        //The test is only written out by finish
+        @Override
+        public void close() {
+        }
+
+        /*
+        Writes the end of the test, and the driver calling its shards if it was split.
+        @returns the unit test executable to be built from the written files
+        @throws IOException if a file of the test could not be written
+         */
+        TestUnit finish() throws IOException {
+            if(failure == null && line.length() > 0)
+                write(new char[]{'\n'}, 0, 1);
+            if(failure != null)
+                throw failure;
+            //The header, includes and main take about 8 lines of their own
+            int length = lines + 8;
+            ArrayList<String> sources = new ArrayList<>(shards);
+            sources.add(className + "TEST");
+
+            //The test is only written if it changed, so an unchanged test is not compiled again
+            File test = new File(destination.getAbsolutePath() + "/" + className + "TEST.cpp");
+            if(!splittable){
+                printEnd();
+                close(outFile, outTemp);
+            } else if(held == null){
+                if(out != null)
+                    endShard();
+                StringWriter text = new StringWriter();
+                try (PrintWriter pw = new PrintWriter(text)) {
+                    writeDriver(pw, shards);
+                }
+                GeneratedFile.write(test, text.toString());
+            } else {
+                StringWriter text = new StringWriter();
+                try (PrintWriter pw = new PrintWriter(text)) {
+                    out = pw;
+                    printMain();
+                    for(String heldLine : held)
+                        pw.println(heldLine);
+                    printEnd();
+                    out = null;
+                }
+                GeneratedFile.write(test, text.toString());
+            }
 
             //       O
             //     / | \
             //       |
             //      / \
 
+            return new TestUnit(className + "TEST", sources, Collections.singletonList(className), length);
+        }
+
+        /*
+        Deletes the temporary file of a test that failed part way through being written.
+         */
+        void discard() {
+            if(out != null)
+                out.close();
+            if(outTemp != null)
+                outTemp.delete();
+            out = null;
+            outTemp = null;
+        }
+
+        /*
+        Writes one line of test calls, ending the shard first when it is full and the line starts a new statement.
+         */
+        private void take(String text) throws IOException {
+            if(text.isEmpty()){
+                blanks++;
+                return;
+            }
+            for(; blanks > 0; blanks--)
+                commit("");
+            if(splittable && depth == 0 && (held == null ? shardLines : lines) >= limit &&
+                    (held == null || lines >= threshold)){
+                if(held != null)
+                    startSplitting();
+                endShard();
+            }
+            commit(text);
+            if(text.equals("\t{"))
+                depth++;
+            else if(text.equals("\t}"))
+                depth--;
+        }
+
+        private void commit(String text) throws IOException {
+            lines++;
+            if(held != null){
+                if(lines <= threshold){
+                    held.add(text);
+                    return;
+                }
+                startSplitting();
+            }
+            if(splittable && out == null)
+                openShard();
+            out.println(text);
+            shardLines++;
+        }
+
+        /*
+        Moves the lines held so far into the first shard, once the test has grown too long to stay in one file.
+         */
+        private void startSplitting() throws IOException {
+            openShard();
+            for(String heldLine : held)
+                out.println(heldLine);
+            shardLines = held.size();
+            held = null;
+        }
+
+        private void openShard() throws IOException {
+            String shard = className + "TEST_" + shards.size();
+            shards.add(shard);
+            open(shard);
+            printIncludes(out, className, fixture, testData);
+            out.println("void " + shard + "(){\n");
+            shardLines = 0;
+        }
+
+        private void endShard() throws IOException {
+            out.println("}");
+            close(outFile, outTemp);
+        }
+
+        /*
+        Starts streaming a file of the test into a temporary file next to it.
+         */
+        private void open(String name) throws IOException {
+            outFile = new File(destination.getAbsolutePath() + "/" + name + ".cpp");
+            outTemp = GeneratedFile.temporaryFor(outFile);
+            out = new PrintWriter(new BufferedWriter(new FileWriter(outTemp)));
+        }
+
+        /*
+        Finishes the file being streamed, replacing the file with it only if the two differ.
+         */
+        private void close(File file, File temp) throws IOException {
+            out.close();
+            //PrintWriter hides its failures, and only reports them when asked
+            boolean failed = out.checkError();
+            out = null;
+            if(failed)
+                throw new IOException(file + " could not be written.");
+            GeneratedFile.replace(temp, file);
+            outTemp = null;
+        }
+
+        private void printMain() {
+            printIncludes(out, className, fixture, testData);
+            //In a unity build the test is included into a batch alongside others, so its main gets its own namespace
+            if(fixture.getUnityBatches() > 0)
+                out.println("namespace " + className + "TEST {\n");
+            //int main{
+            out.println("int main(){\n");
+        }
+
+        private void printEnd() {
+            // return 0;
+            // }
+            out.println("\treturn 0;\n}");
+            if(fixture.getUnityBatches() > 0)
+                out.println("\n}");
+        }
+    }
+
+    /*
+    Subroutine to write the main of a test split into shards, calling the function of each shard in turn
+    @param pw the writer of the driver
+    @param shards the names of the shards
+     */
+    private static void writeDriver(PrintWriter pw, List<String> shards) {
+        pw.println(unitTestHeader);
+        pw.println("//Runs the shards this test was split into\n");
+        for(String shard : shards)
+            pw.println("void " + shard + "();");
+        pw.println("\nint main(){\n");
+        for(String shard : shards)
+            pw.println("\t" + shard + "();");
+        pw.println("\n\treturn 0;\n}");
+    }
+
+    /*
+    Subroutine to write the tests of a method with a CSV file as a table: the rows are written as a static array of
+    structs, one field per parameter, and the method is called from a single loop over the array; Compiling constant data
+    is far cheaper than compiling a statement per row, so large CSV files no longer produce huge functions.
+    Only methods whose parameters are all standard data types can be written this way, and only if every row has a value
+    for each parameter; The rows are put together on their own first, since the test they go into is written out as it
+    is printed, and dropped if one does not fit.
+    @param pw the writer of the unit test
+    @param method the method being tested
+    @param fixture the test fixture, giving the threads the CSV file is read with
+    @returns false if nothing was written because the method can not be tested from a table
+     */
+    private boolean writeCsvTable(PrintWriter pw, Method method, TestFixture fixture) {
+        String[] paramTypes = method.getParamTypes();
+        if(paramTypes.length == 0 || paramTypes[0].trim().isEmpty())
+            return false;
+        StringBuilder fields = new StringBuilder();
+        for(int k = 0; k < paramTypes.length; k++){
+            String fieldType = tableFieldType(paramTypes[k]);
+            if(fieldType == null)
+                return false;
+            fields.append(" ").append(fieldType).append(" p").append(k).append(";");
+        }
+
+        StringWriter table = new StringWriter();
+        int rowCount = 0;
+        try (CsvReader rows = openCsv(method.getCsvFile(), fixture); PrintWriter tw = new PrintWriter(table)) {
+            boolean ragged = false;
+            for(String[] paramSet = rows.readRow(); paramSet != null && !ragged; paramSet = rows.readRow()){
+                ragged = paramSet.length != paramTypes.length;
+                tw.println("\t\t\t{" + String.join(", ", paramSet) + "},");
+                rowCount++;
+            }
+            //an empty array would not compile
+            if(ragged || rowCount == 0)
+                return false;
         } catch (IOException e) {
-            Main.LOGGER.severe("Error generating unit test for class " + methods.get(0).getClassName());
-            System.out.println(e.getStackTrace());
+            return false;
         }
+        pw.println("\t{\n\t\tstatic const struct {" + fields + " } rows[] = {");
+        pw.print(table);
+        pw.println("\t\t};");
+        pw.print("\t\tfor (const auto &row : rows)\n\t\t\tcout << " + method.getMethodName() + "(");
+        for(int k = 0; k < paramTypes.length; k++)
+            pw.print((k == 0 ? "" : ", ") + "row.p" + k);
+        pw.println(");\n\t}");
+        return true;
     }
 
+    /*
+    @param paramType the data type of a parameter
+    @returns the type of the table field holding the parameter's values, or null if the values can not be constant data;
+    strings are held as character arrays, so the table needs no constructor to run
+     */
+    private static String tableFieldType(String paramType) {
+        switch(paramType){
+            case "int":
+            case "double":
+            case "char":
+            case "bool":
+                return paramType;
+            case "string":
+                return "const char*";
+            default:
+                return null;
+        }
+    }
+
+    /*
+    Subroutine to write the tests of a method with a CSV file as a loop over a data file read at run time; The rows are
+    converted into the binary data file next to the test, typed by the method's parameter types, so when only the CSV
+    file changes the data file is all that is rewritten and the test does not have to be compiled again.
+    A data file holds the magic number CUTD, the version, the parameter count and the row count as little endian 32 bit
+    integers, then each row's values in order: ints as 32 bit and doubles as 64 bit little endian numbers, chars and
+    bools as one byte and strings as their 32 bit byte length followed by their UTF-8 bytes.
+    The rows are streamed from the CSV file into the data file, and the row count is filled in once they are all written.
+    @param pw the writer of the unit test
+    @param method the method being tested
+    @param fixture the test fixture, giving the threads the CSV file is read with
+    @param dataFiles the names of the data files written for the test, which the data file is added to
+    @returns false if nothing was written because the rows can not be converted for the method's parameter types
+    @throws IOException if the CSV file could not be read or the data file could not be written
+     */
+    private boolean writeCsvData(PrintWriter pw, Method method, TestFixture fixture, Set<String> dataFiles)
+            throws IOException {
+        String[] paramTypes = method.getParamTypes();
+        if(paramTypes.length == 0 || paramTypes[0].trim().isEmpty())
+            return false;
+        //Only the standard data types have an encoding; a method taking any other type is tested from the CSV file
+        for(String paramType : paramTypes)
+            if(tableFieldType(paramType) == null)
+                return false;
+        //Named after the method's signature, so overloads are kept apart and adding a method does not rename the others
+        String dataFile = method.getClassName() + "TEST_" + method.getMethodName() + "_" +
+                String.join("_", paramTypes) + ".bin";
+        File data = new File(destination.getAbsolutePath() + "/" + dataFile);
+        //The rows are streamed into a temporary file, which only replaces the data file if the two differ
+        File temp = GeneratedFile.temporaryFor(data);
+        try {
+            int rowCount = 0;
+            try (CsvReader rows = openCsv(method.getCsvFile(), fixture);
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                out.write(testDataMagic);
+                writeLittleEndian(out, testDataVersion, 4);
+                writeLittleEndian(out, paramTypes.length, 4);
+                writeLittleEndian(out, 0, 4);
+                for(String[] paramSet = rows.readRow(); paramSet != null; paramSet = rows.readRow(), rowCount++){
+                    if(paramSet.length != paramTypes.length)
+                        throw new UnconvertibleDataException("row " + (rowCount + 1) + " does not have a value " +
+                                "for each parameter");
+                    for(int k = 0; k < paramTypes.length; k++)
+                        writeValue(out, paramTypes[k], paramSet[k].trim());
+                }
+            } catch (UnconvertibleDataException e) {
+                //The data file written by an earlier run is left as it was; only the temporary file is deleted
+                LOGGER.warning("CSV file " + method.getCsvFile() + " can not be converted to test data, so it is " +
+                        "written into the test: " + e.getMessage());
+                return false;
+            }
+            //The row count sits after the magic number, the version and the parameter count
+            try (RandomAccessFile header = new RandomAccessFile(temp, "rw")) {
+                header.seek(12);
+                header.writeInt(Integer.reverseBytes(rowCount));
+            }
+            GeneratedFile.replace(temp, data);
+        } finally {
+            temp.delete();
+        }
+        dataFiles.add(dataFile);
+
+        pw.println("\t{\n\t\tTestData data(\"" + dataFile + "\");");
+        pw.println("\t\tfor (unsigned long row = data.rows(); row > 0 && data.good(); row--) {");
+        for(int k = 0; k < paramTypes.length; k++)
+            pw.println("\t\t\t" + testDataRead(paramTypes[k], "p" + k));
+        pw.print("\t\t\tcout << " + method.getMethodName() + "(");
+        for(int k = 0; k < paramTypes.length; k++)
+            pw.print((k == 0 ? "" : ", ") + "p" + k);
+        pw.println(");\n\t\t}\n\t}");
+        return true;
+    }
+
+    /*
+    Subroutine to delete the data files of a class's test that were written by an earlier run but not by this one, such
+    as those of a method that was removed or is no longer tested from a data file
+    @param className the class being tested
+    @param dataFiles the names of the data files written for the test by this run
+    @throws IOException if a data file could not be deleted
+     */
+    private void deleteStaleData(String className, Set<String> dataFiles) throws IOException {
+        String prefix = className + "TEST_";
+        File[] stale = destination.listFiles((folder, name) ->
+                name.startsWith(prefix) && name.endsWith(".bin") && !dataFiles.contains(name));
+        if(stale == null)
+            return;
+        for(File file : stale)
+            java.nio.file.Files.deleteIfExists(file.toPath());
+    }
+
+    /*
+    Converts one CSV value, a C++ literal, into the data file encoding of its parameter type.
+    @throws UnconvertibleDataException if the value is not a literal of the type
+     */
+    private static void writeValue(OutputStream data, String paramType, String value)
+            throws IOException, UnconvertibleDataException {
+        switch(paramType){
+            case "int":
+                long number;
+                try {
+                    //Long.decode reads decimal, hexadecimal and octal literals the way C++ does
+                    number = Long.decode(value.replaceAll("[uUlL]+$", ""));
+                } catch (NumberFormatException e) {
+                    throw new UnconvertibleDataException(value + " is not an int");
+                }
+                if(number < Integer.MIN_VALUE || number > Integer.MAX_VALUE)
+                    throw new UnconvertibleDataException(value + " does not fit in an int");
+                writeLittleEndian(data, number, 4);
+                break;
+            case "double":
+                double real;
+                try {
+                    real = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new UnconvertibleDataException(value + " is not a double");
+                }
+                writeLittleEndian(data, Double.doubleToLongBits(real), 8);
+                break;
+            case "bool":
+                if(!value.equals("true") && !value.equals("false") && !value.equals("1") && !value.equals("0"))
+                    throw new UnconvertibleDataException(value + " is not a bool");
+                data.write(value.equals("true") || value.equals("1") ? 1 : 0);
+                break;
+            case "char":
+                String character = unquote(value, '\'');
+                if(character.length() != 1 || character.charAt(0) > 0xFF)
+                    throw new UnconvertibleDataException(value + " is not a char");
+                data.write(character.charAt(0));
+                break;
+            default:
+                byte[] bytes = unquote(value, '"').getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                writeLittleEndian(data, bytes.length, 4);
+                data.write(bytes);
+        }
+    }
+
+    /*
+    @returns the text of a character or string literal, with its quotes removed and escape sequences replaced; a value
+    without quotes is taken as it is
+     */
+    private static String unquote(String literal, char quote) {
+        if(literal.length() < 2 || literal.charAt(0) != quote || literal.charAt(literal.length() - 1) != quote)
+            return literal;
+        StringBuilder text = new StringBuilder();
+        for(int i = 1; i < literal.length() - 1; i++){
+            char c = literal.charAt(i);
+            if(c != '\\' || i == literal.length() - 2){
+                text.append(c);
+                continue;
+            }
+            c = literal.charAt(++i);
+            switch(c){
+                case 'n': text.append('\n'); break;
+                case 't': text.append('\t'); break;
+                case 'r': text.append('\r'); break;
+                case '0': text.append('\0'); break;
+                default: text.append(c);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void writeLittleEndian(OutputStream data, long value, int bytes) throws IOException {
+        for(int i = 0; i < bytes; i++)
+            data.write((int) (value >>> (8 * i)));
+    }
+
+    /*
+    @returns the statement declaring a variable of a parameter type and reading its value from the test data
+     */
+    private static String testDataRead(String paramType, String name) {
+        switch(paramType){
+            case "int": return "int " + name + " = data.readInt();";
+            case "double": return "double " + name + " = data.readDouble();";
+            case "bool": return "bool " + name + " = data.readBool();";
+            case "char": return "char " + name + " = data.readChar();";
+            default: return "std::string " + name + " = data.readString();";
+        }
+    }
+
+    /*
+    Method to write the header the unit tests read their data files with; Kept out of the tests themselves, so that
+    tests included together into a unity build batch do not define it twice.
+    Values are put together byte by byte, so the data files read the same on any machine.
+    @returns the written header
+    @throws IOException if the header could not be written
+     */
+    public File writeTestDataHeader() throws IOException {
+        File temp = new File(destination.getAbsolutePath() + "/" + testDataHeader);
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
+            pw.println("//Reads the test data files of the unit tests, one value at a time\n" +
+                    "#ifndef TESTDATA_H\n#define TESTDATA_H\n\n" +
+                    "#include <cstdint>\n#include <cstdlib>\n#include <cstring>\n#include <fstream>\n" +
+                    "#include <iostream>\n#include <string>\n\n" +
+                    "class TestData {\n" +
+                    "public:\n" +
+                    "\t//Opens a data file, looked for in the folder named by TEST_DATA_DIR if it is set\n" +
+                    "\texplicit TestData(const std::string &name) : count(0) {\n" +
+                    "\t\tconst char *dir = std::getenv(\"TEST_DATA_DIR\");\n" +
+                    "\t\tstd::string path = dir ? std::string(dir) + \"/\" + name : name;\n" +
+                    "\t\tin.open(path.c_str(), std::ios::binary);\n" +
+                    "\t\tchar magic[4];\n" +
+                    "\t\tif (!in.read(magic, 4) || std::memcmp(magic, \"CUTD\", 4) != 0 || readUnsigned(4) != " +
+                    testDataVersion + ") {\n" +
+                    "\t\t\tstd::cerr << \"Can not read test data file \" << path << std::endl;\n" +
+                    "\t\t\tin.setstate(std::ios::failbit);\n" +
+                    "\t\t\treturn;\n" +
+                    "\t\t}\n" +
+                    "\t\treadUnsigned(4);\n" +
+                    "\t\tcount = (unsigned long) readUnsigned(4);\n" +
+                    "\t}\n\n" +
+                    "\tunsigned long rows() const { return count; }\n" +
+                    "\tbool good() const { return (bool) in; }\n" +
+                    "\tint readInt() { return (int) (std::int32_t) (std::uint32_t) readUnsigned(4); }\n" +
+                    "\tbool readBool() { return readUnsigned(1) != 0; }\n" +
+                    "\tchar readChar() { return (char) readUnsigned(1); }\n" +
+                    "\tdouble readDouble() {\n" +
+                    "\t\tstd::uint64_t bits = readUnsigned(8);\n" +
+                    "\t\tdouble value;\n" +
+                    "\t\tstd::memcpy(&value, &bits, sizeof value);\n" +
+                    "\t\treturn value;\n" +
+                    "\t}\n" +
+                    "\tstd::string readString() {\n" +
+                    "\t\tstd::string value(readUnsigned(4), '\\0');\n" +
+                    "\t\tif (!value.empty())\n" +
+                    "\t\t\tin.read(&value[0], value.size());\n" +
+                    "\t\treturn value;\n" +
+                    "\t}\n\n" +
+                    "private:\n" +
+                    "\tstd::ifstream in;\n" +
+                    "\tunsigned long count;\n\n" +
+                    "\t//Reads a little endian number of the given number of bytes\n" +
+                    "\tstd::uint64_t readUnsigned(int bytes) {\n" +
+                    "\t\tunsigned char buffer[8] = {0};\n" +
+                    "\t\tin.read((char *) buffer, bytes);\n" +
+                    "\t\tstd::uint64_t value = 0;\n" +
+                    "\t\tfor (int i = bytes - 1; i >= 0; i--)\n" +
+                    "\t\t\tvalue = value << 8 | buffer[i];\n" +
+                    "\t\treturn value;\n" +
+                    "\t}\n" +
+                    "};\n\n" +
+                    "#endif");
+        }
+        GeneratedFile.write(temp, text.toString());
+        return temp;
+    }
+
+    /*
+    Method to decide how the written unit tests are compiled;
+    With unity builds on, the tests are grouped into the test fixture's number of batches and a batch file is written
+    for each, otherwise every unit test is compiled as it was written.
+    @param written the unit tests written for each class
+    @param fixture TestFixture data structure containing information on how the tests are to be built
+    @returns the unit test executables to be built
+    @throws IOException if a batch file could not be written
+     */
+    public ArrayList<TestUnit> writeTestUnits(List<TestUnit> written, TestFixture fixture) throws IOException {
+        if(fixture.getRuntimeCsvData())
+            writeTestDataHeader();
+        if(fixture.getUnityBatches() == 0)
+            return new ArrayList<>(written);
+        ArrayList<TestUnit> units = new ArrayList<>();
+        ArrayList<ArrayList<TestUnit>> batches = unityBatches(written, fixture.getUnityBatches());
+        for(int i = 0; i < batches.size(); i++){
+            ArrayList<String> classes = new ArrayList<>();
+            int lines = 0;
+            for(TestUnit test : batches.get(i)){
+                classes.addAll(test.getTestedClasses());
+                lines += test.getLines();
+            }
+            writeUnityBatch(unityBatchPrefix + i, classes, fixture);
+            units.add(new TestUnit(unityBatchPrefix + i, Collections.singletonList(unityBatchPrefix + i), classes,
+                    lines));
+        }
+        return units;
+    }
+
+    /*
+    Method to split the unit tests into batches of about the same length, so that no one batch holds up a parallel build;
+    The longest tests are placed first, each into the batch that is shortest so far.
+    @param written the unit tests written for each class
+    @param batches the number of batches wanted; fewer are made if there are fewer tests
+    @returns the tests of each batch, in name order
+     */
+    static ArrayList<ArrayList<TestUnit>> unityBatches(List<TestUnit> written, int batches) {
+        ArrayList<TestUnit> tests = new ArrayList<>(written);
+        tests.sort((a, b) -> a.getLines() == b.getLines() ? a.getName().compareTo(b.getName()) :
+                Integer.compare(b.getLines(), a.getLines()));
+        int count = Math.min(batches, tests.size());
+        ArrayList<ArrayList<TestUnit>> result = new ArrayList<>();
+        long[] totals = new long[count];
+        //Batch numbers ordered by the lines already in them, then by number
+        PriorityQueue<Integer> shortest = new PriorityQueue<>((a, b) -> totals[a] == totals[b] ?
+                Integer.compare(a, b) : Long.compare(totals[a], totals[b]));
+        for(int i = 0; i < count; i++){
+            result.add(new ArrayList<>());
+            shortest.add(i);
+        }
+        for(TestUnit test : tests){
+            int batch = shortest.poll();
+            result.get(batch).add(test);
+            totals[batch] += test.getLines();
+            shortest.add(batch);
+        }
+        result.forEach(batch -> batch.sort((a, b) -> a.getName().compareTo(b.getName())));
+        return result;
+    }
+
+    /*
+    Subroutine to write a unity build batch, a single translation unit that includes the unit tests of its classes and
+    runs each of them from its own main
+    @param name the name of the batch file, without its file type
+    @param classes the classes whose unit tests are included
+    @param fixture TestFixture data structure containing information on how the tests are to be built
+    @throws IOException if the batch file could not be written
+     */
+    private void writeUnityBatch(String name, ArrayList<String> classes, TestFixture fixture)
+            throws IOException {
+        File temp = new File(destination.getAbsolutePath() + "/" + name + ".cpp");
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
+            pw.println(unitTestHeader);
+            if(fixture.getPrecompiledHeader())
+                pw.println("#include \"" + precompiledHeader + "\"");
+            for(String tested : classes)
+                pw.println("#include \"" + tested + "TEST.cpp\"");
+            pw.println("\nint main(){\n");
+            for(String tested : classes)
+                pw.println("\t" + tested + "TEST::main();");
+            pw.println("\n\treturn 0;\n}");
+        }
+        GeneratedFile.write(temp, text.toString());
+    }
+
+
+    /*
+    Method to write the header that every unit test includes first when the test fixture asks for a precompiled header.
+    Covers the standard library headers used by the tests and the project, and the project headers included by more
+    than one class; Project headers are expected to have include guards, since the tests include them again.
+    @param dependencies the dependencies of the parsed .cpp files
+    @returns the written header
+    @throws IOException if the header could not be written
+     */
+    public File writePrecompiledHeader(Collection<Dependence> dependencies) throws IOException {
+        TreeSet<String> libraries = new TreeSet<>(Arrays.asList("iostream", "string"));
+        for(Dependence dep : dependencies)
+            for(String library : dep.getLibraries())
+                if(standardHeaders.contains(library))
+                    libraries.add(library);
+
+        File temp = new File(destination.getAbsolutePath() + "/" + precompiledHeader);
+        //Rewriting an unchanged header would make every unit test compile again
+        StringWriter text = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(text)) {
+            pw.println("//Precompiled header shared by every unit test\n#ifndef TESTPCH_H\n#define TESTPCH_H\n");
+            for(String library : libraries)
+                pw.println("#include <" + library + ">");
+            for(String header : commonProjectHeaders(dependencies))
+                pw.println("#include \"" + header + "\"");
+            pw.println("\n#endif");
+        }
+        GeneratedFile.write(temp, text.toString());
+        return temp;
+    }
+
+    /*
+    Method to find the project headers worth precompiling
+    @param dependencies the dependencies of the parsed .cpp files
+    @returns the project headers included by more than one class, in name order
+     */
+    static ArrayList<String> commonProjectHeaders(Collection<Dependence> dependencies) {
+        HashMap<String, Integer> includedBy = new HashMap<>();
+        for(Dependence dep : dependencies)
+            for(String header : dep.getDependencies())
+                if(!header.isEmpty() && !header.equals(dep.getClassName()))
+                    includedBy.merge(header, 1, Integer::sum);
+        ArrayList<String> common = new ArrayList<>();
+        includedBy.forEach((header, count) -> {
+            if(count > 1)
+                common.add(header + ".h");
+        });
+        Collections.sort(common);
+        return common;
+    }
 
     /*
     Method to return the header for all unit tests
@@ -168,15 +1015,27 @@ public class UnitTestWriter {
     Method to return the destination folder
     @returns File object form of the destination path of the current unit test files
      */
-    public static File getDestination() {
+    public File getDestination() {
         return destination;
     }
 
-    /*Method to set the destination folder of the unit test files
-    @param destination, the new destination folder for the unit test files
+    /*
+    Method to return the cache CSV files are read through
+    @returns the CSV cache, or null if CSV files are read from disk every time
+     */
+    public CsvCache getCsvCache() {
+        return csvCache;
+    }
+
+    /*
+    Opens the CSV file of a method, through the CSV cache if there is one.
+    @param csv the CSV file
+    @param fixture the test fixture, giving the threads a large CSV file is read with
+    @returns a reader of the file's rows
      */
-    public static void setDestination(File ndestination) {
-        destination = ndestination;
+    private CsvReader openCsv(File csv, TestFixture fixture) throws IOException {
+        return csvCache != null ? csvCache.open(csv, fixture.getCsvThreads()) :
+                CsvReader.open(csv, fixture.getCsvThreads());
     }
 
 
@@ -0,0 +1,90 @@
+package sample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the components, closures and build order of DependencyGraph on a small project where a, b and c include each
+ * other in a cycle, c also includes d, and e includes a.
+ *
+ * @author Axolotl Development Team
+ */
+public class DependencyGraphTest {
+
+    private static DependencyGraph cyclicGraph() {
+        List<Dependence> dependencies = new ArrayList<>();
+        dependencies.add(new Dependence("a", new String[]{"a", "b"}, new String[0]));
+        dependencies.add(new Dependence("b", new String[]{"c", "c"}, new String[0]));
+        // b's .cpp listed a second time, as happens when a source is given twice
+        dependencies.add(new Dependence("b", new String[]{"c"}, new String[0]));
+        dependencies.add(new Dependence("c", new String[]{"a", "d"}, new String[0]));
+        dependencies.add(new Dependence("d", new String[]{""}, new String[0]));
+        dependencies.add(new Dependence("e", new String[]{"a"}, new String[0]));
+        return DependencyGraph.build(dependencies);
+    }
+
+    @Test
+    public void repeatedEdgesAreKeptOnce() {
+        DependencyGraph graph = cyclicGraph();
+        assertEquals(5, graph.size());
+        assertArrayEquals(new int[]{graph.idOf("c")}, graph.dependenciesOf(graph.idOf("b")));
+        // A class including its own header and the empty name are not edges
+        assertArrayEquals(new int[]{graph.idOf("b")}, graph.dependenciesOf(graph.idOf("a")));
+        assertArrayEquals(new int[0], graph.dependenciesOf(graph.idOf("d")));
+    }
+
+    @Test
+    public void cycleIsOneComponent() {
+        DependencyGraph graph = cyclicGraph();
+        assertEquals(3, graph.stronglyConnectedComponents().length);
+        ArrayList<int[]> cycles = graph.cycles();
+        assertEquals(1, cycles.size());
+        assertEquals(ids(graph, "a", "b", "c"), bits(cycles.get(0)));
+    }
+
+    @Test
+    public void closuresFollowTheCycle() {
+        DependencyGraph graph = cyclicGraph();
+        // A class in a cycle depends on itself
+        assertEquals(ids(graph, "a", "b", "c", "d"), graph.transitiveDependencies(graph.idOf("a")));
+        assertEquals(ids(graph, "a", "b", "c", "d"), graph.transitiveDependencies(graph.idOf("e")));
+        assertEquals(ids(graph), graph.transitiveDependencies(graph.idOf("d")));
+        assertEquals(ids(graph, "a", "b", "c", "e"), graph.transitiveDependents(graph.idOf("d")));
+        assertEquals(ids(graph), graph.transitiveDependents(graph.idOf("e")));
+    }
+
+    @Test
+    public void buildOrderPutsIncludedClassesFirst() {
+        DependencyGraph graph = cyclicGraph();
+        int[] order = graph.buildOrder();
+        assertEquals(graph.size(), order.length);
+        int[] position = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+            position[order[i]] = i;
+        assertTrue(position[graph.idOf("d")] < position[graph.idOf("c")]);
+        for (String name : Arrays.asList("a", "b", "c"))
+            assertTrue(position[graph.idOf(name)] < position[graph.idOf("e")]);
+    }
+
+    private static BitSet ids(DependencyGraph graph, String... names) {
+        BitSet ids = new BitSet();
+        for (String name : names)
+            ids.set(graph.idOf(name));
+        return ids;
+    }
+
+    private static BitSet bits(int[] ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids)
+            bits.set(id);
+        return bits;
+    }
+}